@@ -0,0 +1,59 @@
+package me.petoma21.lunaChatSync2.benchmark;
+
+import me.petoma21.lunaChatSync2.config.ConfigManager;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// ベンチマーク用の設定。同梱の config.yml を読み込み、必要な項目だけ上書きする
+public final class BenchmarkConfig {
+
+    private BenchmarkConfig() {
+    }
+
+    public static YamlConfiguration defaults() {
+        try (Reader reader = new InputStreamReader(
+                BenchmarkConfig.class.getResourceAsStream("/config.yml"), StandardCharsets.UTF_8)) {
+            return YamlConfiguration.loadConfiguration(reader);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load bundled config.yml", e);
+        }
+    }
+
+    public static ConfigManager configManager(YamlConfiguration config) {
+        return new ConfigManager(config);
+    }
+
+    // 再現性のため固定シードで生成した英小文字の単語
+    public static List<String> randomWords(int count, long seed) {
+        Random random = new Random(seed);
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = 4 + random.nextInt(6);
+            StringBuilder builder = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                builder.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(builder.toString());
+        }
+        return words;
+    }
+
+    // 典型的な長さのチャット文（無視ワードを含まない）
+    public static String chatLine(long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 80) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append("Hello").append(random.nextInt(1000)).append(" ワールド");
+        }
+        return builder.toString();
+    }
+}
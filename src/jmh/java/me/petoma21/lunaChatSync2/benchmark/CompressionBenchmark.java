@@ -0,0 +1,121 @@
+package me.petoma21.lunaChatSync2.benchmark;
+
+import me.petoma21.lunaChatSync2.util.MessageCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// 本文の圧縮にかかる時間と保存サイズ
+// 保存サイズは補助カウンタ（rawBytes / storedBytes の合計）で出力され、比が圧縮後の割合になる
+// utf8 は圧縮しない場合（TEXT に保存する場合）の変換コスト
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    private static final String[] JAPANESE_WORDS = {
+            "こんにちは", "よろしくお願いします", "ダイヤモンド", "村人", "交易", "建築", "今から", "手伝って",
+            "ネザー", "要塞", "どこ", "ありがとう", "一緒に", "行きませんか", "サーバー", "ロビー", "です", "ね"
+    };
+
+    @Param({"ascii", "japanese"})
+    public String text;
+
+    // 文字数（chat.max-message-length の既定値は 256）
+    @Param({"64", "256"})
+    public int length;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private MessageCodec codec;
+    private String message;
+    private int rawLength;
+    private byte[] encoded;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sizes {
+        public long rawBytes;
+        public long storedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rawBytes = 0;
+            storedBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        // 閾値を最小にし、短い本文でも圧縮した場合のコストを測る
+        codec = new MessageCodec(1, level);
+        message = text.equals("japanese") ? japaneseLine(length, 11L) : asciiLine(length, 11L);
+        rawLength = message.getBytes(StandardCharsets.UTF_8).length;
+        encoded = codec.encode(message);
+        if (encoded == null) {
+            // 圧縮しても小さくならない本文は展開する対象が無いため、2回繰り返した本文で計測する
+            encoded = codec.encode(message.repeat(2));
+        }
+    }
+
+    @Benchmark
+    public byte[] utf8() {
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encode(Sizes sizes) {
+        byte[] result = codec.encode(message);
+        sizes.rawBytes += rawLength;
+        // 小さくならない本文は TEXT のまま保存される
+        sizes.storedBytes += result != null ? result.length : rawLength;
+        return result;
+    }
+
+    @Benchmark
+    public String decode() {
+        return MessageCodec.decode(encoded);
+    }
+
+    private static String asciiLine(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(BenchmarkConfig.randomWords(1, random.nextLong()).get(0));
+        }
+        return builder.substring(0, length);
+    }
+
+    private static String japaneseLine(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(JAPANESE_WORDS[random.nextInt(JAPANESE_WORDS.length)]);
+            if (random.nextInt(4) == 0) {
+                builder.append('、');
+            }
+        }
+        return builder.substring(0, length);
+    }
+}
@@ -0,0 +1,79 @@
+package me.petoma21.lunaChatSync2.benchmark;
+
+import me.petoma21.lunaChatSync2.util.MessageIdWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// 受信済みIDの重複判定。MessageIdWindow と、以前の「10000件でclearするHashSet」を比較する
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DedupBenchmark {
+
+    private static final int IDS = 1 << 16;
+
+    private String[] ids;
+    private int next;
+    private MessageIdWindow window;
+    private Set<String> hashSet;
+
+    @Setup
+    public void setup() {
+        ids = new String[IDS];
+        for (int i = 0; i < IDS; i++) {
+            ids[i] = UUID.randomUUID().toString();
+        }
+        window = new MessageIdWindow(16384, 600_000L);
+        hashSet = new HashSet<>();
+        for (int i = 0; i < 8192; i++) {
+            window.add(ids[i]);
+            hashSet.add(ids[i]);
+        }
+    }
+
+    private String nextId() {
+        String id = ids[next];
+        next = (next + 1) & (IDS - 1);
+        return id;
+    }
+
+    // 新しいIDの登録（容量を超えた分は古い順に追い出される）
+    @Benchmark
+    public boolean windowAdd() {
+        return window.add(nextId());
+    }
+
+    @Benchmark
+    public boolean windowContainsHit() {
+        return window.contains(ids[next++ & 8191]);
+    }
+
+    @Benchmark
+    public boolean hashSetAdd() {
+        if (hashSet.size() > 10000) {
+            hashSet.clear();
+        }
+        return hashSet.add(nextId());
+    }
+
+    @Benchmark
+    public boolean hashSetContainsHit() {
+        return hashSet.contains(ids[next++ & 8191]);
+    }
+}
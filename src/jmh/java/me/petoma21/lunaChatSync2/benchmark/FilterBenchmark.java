@@ -0,0 +1,70 @@
+package me.petoma21.lunaChatSync2.benchmark;
+
+import me.petoma21.lunaChatSync2.config.ConfigSnapshot;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ローカルの発言の同期判定と無視ワード判定
+// automaton（Aho-Corasick）と、以前の1ワードずつ contains する実装を比較する
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int patterns;
+
+    private ConfigSnapshot snapshot;
+    private List<String> words;
+    private String message;
+
+    @Setup
+    public void setup() {
+        words = BenchmarkConfig.randomWords(patterns, 42L);
+        message = BenchmarkConfig.chatLine(7L);
+
+        YamlConfiguration config = BenchmarkConfig.defaults();
+        config.set("filters.ignored-words", words);
+        config.set("filters.ignored-players", BenchmarkConfig.randomWords(100, 11L));
+        snapshot = ConfigSnapshot.compile(config);
+    }
+
+    @Benchmark
+    public boolean containsIgnoredWordsAutomaton() {
+        return snapshot.containsIgnoredWords(message);
+    }
+
+    // 以前の ConfigManager.containsIgnoredWords と同じ処理
+    @Benchmark
+    public boolean containsIgnoredWordsLoop() {
+        String lowerMessage = message.toLowerCase();
+        for (String word : words) {
+            if (lowerMessage.contains(word.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ChatListener.shouldSyncMessage のうち権限判定以外
+    @Benchmark
+    public boolean shouldSyncMessage() {
+        return snapshot.shouldSyncMessage("Steve", "global", message);
+    }
+}
@@ -0,0 +1,92 @@
+package me.petoma21.lunaChatSync2.benchmark;
+
+import me.petoma21.lunaChatSync2.managers.OutgoingChatQueue;
+import me.petoma21.lunaChatSync2.util.MpscRingBuffer;
+import me.petoma21.lunaChatSync2.util.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// チャットイベント側の受け渡しのコスト。取り出し側は別スレッドで動かし続ける
+// submit はイベント処理中に行う処理そのもの（-prof gc でメモリ確保量も確認できる）
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class HandoffBenchmark {
+
+    private static final UUID PLAYER = UUID.randomUUID();
+
+    private OutgoingChatQueue outgoingQueue;
+    private MpscRingBuffer<Object> ringBuffer;
+    private ConcurrentLinkedQueue<Object> linkedQueue;
+    private Thread drainer;
+    private volatile boolean running;
+    private String message;
+
+    @Setup
+    public void setup() {
+        message = BenchmarkConfig.chatLine(1L);
+        // フィルタ判定まで含めて専用スレッドで処理し、書き込みキューへの追加は常に成功とする
+        outgoingQueue = new OutgoingChatQueue(Logger.getLogger("LunaChatSync2-Benchmark"),
+                BenchmarkConfig.configManager(BenchmarkConfig.defaults()), new TimeOrderedIdGenerator("lobby"),
+                1 << 16, chatMessage -> true);
+        outgoingQueue.start();
+
+        ringBuffer = new MpscRingBuffer<>(1 << 16);
+        linkedQueue = new ConcurrentLinkedQueue<>();
+        running = true;
+        drainer = new Thread(() -> {
+            while (running) {
+                while (ringBuffer.poll() != null) {
+                    // 読み捨てる
+                }
+                while (linkedQueue.poll() != null) {
+                    // 読み捨てる
+                }
+                Thread.onSpinWait();
+            }
+        }, "benchmark-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        outgoingQueue.shutdown();
+        running = false;
+        drainer.join();
+    }
+
+    @Benchmark
+    public boolean submit() {
+        return outgoingQueue.submit("Steve", PLAYER, "global", message);
+    }
+
+    @Benchmark
+    public boolean ringBufferOffer() {
+        return ringBuffer.offer(message);
+    }
+
+    @Benchmark
+    public boolean linkedQueueOffer() {
+        return linkedQueue.offer(message);
+    }
+}
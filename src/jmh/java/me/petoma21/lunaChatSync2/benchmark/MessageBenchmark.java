@@ -0,0 +1,77 @@
+package me.petoma21.lunaChatSync2.benchmark;
+
+import me.petoma21.lunaChatSync2.config.MessageTemplate;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+import me.petoma21.lunaChatSync2.util.MessageIdGenerator;
+import me.petoma21.lunaChatSync2.util.RandomIdGenerator;
+import me.petoma21.lunaChatSync2.util.TimeOrderedIdGenerator;
+import org.bukkit.ChatColor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// メッセージの生成と、受信メッセージの表示文字列の組み立て
+// 割り当て量は -prof gc で確認する（gc.alloc.rate.norm）
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    private MessageTemplate template;
+    private MessageIdGenerator timeOrdered;
+    private MessageIdGenerator random;
+    private ChatMessage received;
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    @Setup
+    public void setup() {
+        template = MessageTemplate.compile("%server% <%player%> %message%", "&a", "@[%server%]");
+        timeOrdered = new TimeOrderedIdGenerator("lobby");
+        random = new RandomIdGenerator();
+        received = ChatMessage.local(random, "survival", "Steve", UUID.randomUUID().toString(), "global",
+                BenchmarkConfig.chatLine(7L), System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return random.nextId();
+    }
+
+    @Benchmark
+    public String timeOrderedUuid() {
+        return timeOrdered.nextId();
+    }
+
+    @Benchmark
+    public ChatMessage newChatMessage() {
+        return ChatMessage.local(timeOrdered, "lobby", "Steve", "069a79f4-44e9-4726-a5be-fca90e38aaf5", "global", "hello world",
+                System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public String renderTemplate() {
+        buffer.setLength(0);
+        return template.render(buffer, received).toString();
+    }
+
+    // 以前の processReceivedMessage と同じ組み立て方
+    @Benchmark
+    public String renderFormat() {
+        String color = ChatColor.translateAlternateColorCodes('&', "&a");
+        String serverName = color + "@[%server%]".replace("%server%", received.getServerName()) + ChatColor.RESET;
+        return String.format("%s <%s> %s", serverName, received.getPlayerName(), received.getMessage());
+    }
+}
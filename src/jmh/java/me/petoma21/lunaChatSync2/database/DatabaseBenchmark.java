@@ -0,0 +1,129 @@
+package me.petoma21.lunaChatSync2.database;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import me.petoma21.lunaChatSync2.benchmark.BenchmarkConfig;
+import me.petoma21.lunaChatSync2.metrics.SyncMetrics;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+import me.petoma21.lunaChatSync2.util.MessageIdGenerator;
+import me.petoma21.lunaChatSync2.util.RandomIdGenerator;
+import me.petoma21.lunaChatSync2.util.TimeOrderedIdGenerator;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// 組み込みの MariaDB に対する DatabaseManager の書き込み・ポーリングの処理量
+// insertMessages はパッケージ内のメソッドのため、このクラスは database パッケージに置く
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseBenchmark {
+
+    private static final int SEED_ROWS = 20_000;
+    private static final int INSERT_BATCH = 100;
+
+    @Param({"100", "500"})
+    public int pageSize;
+
+    // random の場合は message_id の索引へのランダムな挿入になる
+    @Param({"time-ordered", "random"})
+    public String idGenerator;
+
+    private MessageIdGenerator ids;
+    private DB db;
+    private DatabaseManager databaseManager;
+    private long maxSeededId;
+    private long pollCursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ids = idGenerator.equals("random") ? new RandomIdGenerator() : new TimeOrderedIdGenerator("benchmark");
+        DBConfigurationBuilder dbConfig = DBConfigurationBuilder.newBuilder();
+        dbConfig.setPort(0);
+        db = DB.newEmbeddedDB(dbConfig.build());
+        db.start();
+        db.createDB("lunachatsync_bench");
+
+        YamlConfiguration config = BenchmarkConfig.defaults();
+        config.set("database.host", "127.0.0.1");
+        config.set("database.port", dbConfig.getPort());
+        config.set("database.database", "lunachatsync_bench");
+        config.set("database.username", "root");
+        config.set("database.password", "");
+        config.set("logging.save-to-file", false);
+
+        databaseManager = new DatabaseManager(Logger.getLogger("LunaChatSync2-Benchmark"),
+                BenchmarkConfig.configManager(config), new SyncMetrics(),
+                Files.createTempDirectory("lunachatsync-bench").toFile());
+        if (!databaseManager.initialize()) {
+            throw new IllegalStateException("Failed to initialize DatabaseManager against embedded MariaDB");
+        }
+
+        // ポーリング用に他サーバーの発言を用意
+        for (int i = 0; i < SEED_ROWS; i += INSERT_BATCH) {
+            databaseManager.insertMessages(batch("survival", INSERT_BATCH));
+        }
+        maxSeededId = SEED_ROWS;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (databaseManager != null) {
+            databaseManager.close();
+        }
+        if (db != null) {
+            db.stop();
+        }
+    }
+
+    private List<ChatMessage> batch(String serverName, int size) {
+        List<ChatMessage> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(ChatMessage.local(ids, serverName, "Steve", UUID.randomUUID().toString(), "global",
+                    "benchmark message " + i, System.currentTimeMillis()));
+        }
+        return messages;
+    }
+
+    // 1回のバッチINSERT（行数/秒で表示）
+    @Benchmark
+    @OperationsPerInvocation(INSERT_BATCH)
+    public void insertBatch() throws SQLException {
+        databaseManager.insertMessages(batch("lobby", INSERT_BATCH));
+    }
+
+    // 既読位置から1ページ取得し、次の呼び出しはその続きから（末尾まで読んだら先頭へ戻る）
+    @Benchmark
+    public int pollPage() {
+        List<ChatMessage> messages = databaseManager.getMessagesAfter("lobby", pollCursor, pageSize).join();
+        if (messages.isEmpty() || pollCursor >= maxSeededId) {
+            pollCursor = 0L;
+        } else {
+            pollCursor = messages.get(messages.size() - 1).getId();
+        }
+        return messages.size();
+    }
+}
@@ -8,14 +8,23 @@ import org.bukkit.event.Listener;
 import me.petoma21.lunaChatSync2.config.ConfigManager;
 import me.petoma21.lunaChatSync2.database.DatabaseManager;
 import me.petoma21.lunaChatSync2.listeners.ChatListener;
+import me.petoma21.lunaChatSync2.listeners.PlayerJoinListener;
 import me.petoma21.lunaChatSync2.managers.ChatSyncManager;
 import me.petoma21.lunaChatSync2.commands.VChatSyncCommand;
+import me.petoma21.lunaChatSync2.metrics.MetricsHttpServer;
+import me.petoma21.lunaChatSync2.metrics.SyncMetrics;
+
+import java.io.IOException;
+import java.util.logging.Level;
+
 public final class LunaChatSync2 extends JavaPlugin {
 
         private static LunaChatSync2 instance;
         private ConfigManager configManager;
         private DatabaseManager databaseManager;
         private ChatSyncManager chatSyncManager;
+        private final SyncMetrics metrics = new SyncMetrics();
+        private MetricsHttpServer metricsServer;
         private VChatSyncCommand commandHandler;
 
         @Override
@@ -46,15 +55,31 @@ public final class LunaChatSync2 extends JavaPlugin {
 
             // イベントリスナーの登録
             Bukkit.getPluginManager().registerEvents(new ChatListener(this), this);
+            Bukkit.getPluginManager().registerEvents(new PlayerJoinListener(this), this);
 
             // コマンドハンドラーの初期化
             commandHandler = new VChatSyncCommand(this);
 
+            // 計測値の公開（任意）
+            if (configManager.isMetricsHttpEnabled()) {
+                metricsServer = new MetricsHttpServer(getLogger(), metrics,
+                        configManager.getMetricsHttpBindAddress(), configManager.getMetricsHttpPort());
+                try {
+                    metricsServer.start();
+                } catch (IOException e) {
+                    getLogger().log(Level.WARNING, "Failed to start metrics endpoint", e);
+                    metricsServer = null;
+                }
+            }
+
             getLogger().info("VelocityChatSync has been enabled successfully!");
         }
 
         @Override
         public void onDisable() {
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
             if (chatSyncManager != null) {
                 chatSyncManager.shutdown();
             }
@@ -87,4 +112,8 @@ public final class LunaChatSync2 extends JavaPlugin {
         public ChatSyncManager getChatSyncManager() {
             return chatSyncManager;
         }
+
+        public SyncMetrics getMetrics() {
+            return metrics;
+        }
     }
\ No newline at end of file
@@ -5,9 +5,29 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.ChatColor;
 import me.petoma21.lunaChatSync2.LunaChatSync2;
 import me.petoma21.lunaChatSync2.config.ConfigManager;
+import me.petoma21.lunaChatSync2.config.MessageTemplate;
+import me.petoma21.lunaChatSync2.database.ChannelRoute;
+import me.petoma21.lunaChatSync2.database.ChatMessageWriter;
+import me.petoma21.lunaChatSync2.database.CircuitBreaker;
+import me.petoma21.lunaChatSync2.database.DatabaseExecutor;
+import me.petoma21.lunaChatSync2.database.RetentionPurger;
+import me.petoma21.lunaChatSync2.managers.ChatHistoryCache;
+import me.petoma21.lunaChatSync2.managers.DeliveryQueue;
+import me.petoma21.lunaChatSync2.managers.FetchWindow;
+import me.petoma21.lunaChatSync2.managers.OutgoingChatQueue;
+import me.petoma21.lunaChatSync2.metrics.LatencyHistogram;
+import me.petoma21.lunaChatSync2.metrics.SyncMetrics;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+import me.petoma21.lunaChatSync2.transport.MessageTransport;
+import me.petoma21.lunaChatSync2.transport.NoopTransport;
+import me.petoma21.lunaChatSync2.transport.RelayServer;
+import me.petoma21.lunaChatSync2.util.MessageCodec;
 
 public class VChatSyncCommand {
 
+    // history コマンドで表示する最大件数
+    private static final int MAX_HISTORY_LINES = 200;
+
     private final LunaChatSync2 plugin;
     private final ConfigManager configManager;
 
@@ -34,6 +54,12 @@ public class VChatSyncCommand {
             case "status":
                 handleStatus(sender);
                 break;
+            case "metrics":
+                handleMetrics(sender);
+                break;
+            case "history":
+                handleHistory(sender, args);
+                break;
             case "test":
                 handleTest(sender);
                 break;
@@ -55,6 +81,8 @@ public class VChatSyncCommand {
         sender.sendMessage(configManager.getPrefix() + ChatColor.YELLOW + "VelocityChatSync Commands:");
         sender.sendMessage(ChatColor.GRAY + "/vchatsync reload " + ChatColor.WHITE + "- Reload configuration");
         sender.sendMessage(ChatColor.GRAY + "/vchatsync status " + ChatColor.WHITE + "- Show plugin status");
+        sender.sendMessage(ChatColor.GRAY + "/vchatsync metrics " + ChatColor.WHITE + "- Show latency and throughput metrics");
+        sender.sendMessage(ChatColor.GRAY + "/vchatsync history <channel> [count] " + ChatColor.WHITE + "- Show recent chat in a channel");
         sender.sendMessage(ChatColor.GRAY + "/vchatsync test " + ChatColor.WHITE + "- Test database connection");
         sender.sendMessage(ChatColor.GRAY + "/vchatsync sync " + ChatColor.WHITE + "- Force synchronization");
         sender.sendMessage(ChatColor.GRAY + "/vchatsync debug <on|off> " + ChatColor.WHITE + "- Toggle debug mode");
@@ -71,6 +99,32 @@ public class VChatSyncCommand {
         }
     }
 
+    private void handleMetrics(CommandSender sender) {
+        SyncMetrics metrics = plugin.getMetrics();
+        long uptimeSeconds = Math.max((System.currentTimeMillis() - metrics.getStartTime()) / 1000L, 1L);
+
+        sender.sendMessage(configManager.getPrefix() + ChatColor.YELLOW + "Sync Metrics:");
+        sender.sendMessage(ChatColor.GRAY + "Messages: " + ChatColor.WHITE +
+                "published " + metrics.getMessagesPublished().sum() +
+                ", inserted " + metrics.getMessagesInserted().sum() +
+                ", fetched " + metrics.getMessagesFetched().sum() +
+                ", delivered " + metrics.getMessagesDelivered().sum());
+        sender.sendMessage(ChatColor.GRAY + "Throughput: " + ChatColor.WHITE +
+                String.format("%.2f inserted/s, %.2f delivered/s",
+                        (double) metrics.getMessagesInserted().sum() / uptimeSeconds,
+                        (double) metrics.getMessagesDelivered().sum() / uptimeSeconds));
+        sender.sendMessage(ChatColor.GRAY + "Errors: " + ChatColor.WHITE +
+                "insert " + metrics.getInsertErrors().sum() + ", poll " + metrics.getPollErrors().sum());
+
+        for (LatencyHistogram histogram : metrics.getHistograms()) {
+            sender.sendMessage(ChatColor.GRAY + histogram.getHelp() + ": " + ChatColor.WHITE +
+                    String.format("p50 %d, p90 %d, p99 %d, max %d %s (n=%d)",
+                            histogram.getValueAtQuantile(0.5), histogram.getValueAtQuantile(0.9),
+                            histogram.getValueAtQuantile(0.99), histogram.getMax(),
+                            histogram.getUnit(), histogram.getCount()));
+        }
+    }
+
     private void handleStatus(CommandSender sender) {
         String serverName = configManager.getServerName();
         boolean syncEnabled = configManager.isChatSyncEnabled();
@@ -82,7 +136,128 @@ public class VChatSyncCommand {
         sender.sendMessage(ChatColor.GRAY + "Sync Enabled: " + (syncEnabled ? ChatColor.GREEN + "YES" : ChatColor.RED + "NO"));
         sender.sendMessage(ChatColor.GRAY + "Sync Running: " + (syncRunning ? ChatColor.GREEN + "YES" : ChatColor.RED + "NO"));
         sender.sendMessage(ChatColor.GRAY + "Processed Messages: " + ChatColor.WHITE + processedCount);
+        sender.sendMessage(ChatColor.GRAY + "Last Delivered ID: " + ChatColor.WHITE + plugin.getChatSyncManager().getLastDeliveredId() +
+                " (acknowledged " + plugin.getChatSyncManager().getLastAcknowledgedId() +
+                ", failed acks " + plugin.getChatSyncManager().getAckFailureCount() + ")");
+        FetchWindow fetchWindow = plugin.getChatSyncManager().getFetchWindow();
+        sender.sendMessage(ChatColor.GRAY + "Fetch Window: " + ChatColor.WHITE + "settled " + fetchWindow.getSettled() +
+                ", fetched " + fetchWindow.getFetched() + " (rechecking " + fetchWindow.getPendingCount() +
+                " ids, late rows " + plugin.getChatSyncManager().getLateMessageCount() + ")");
         sender.sendMessage(ChatColor.GRAY + "Sync Delay: " + ChatColor.WHITE + configManager.getSyncDelay() + "ms");
+        sender.sendMessage(ChatColor.GRAY + "Poll Interval: " + ChatColor.WHITE + plugin.getChatSyncManager().getCurrentPollInterval() +
+                "ms (polls " + plugin.getChatSyncManager().getPollCount() +
+                ", skipped " + plugin.getChatSyncManager().getSkippedPollCount() + ")");
+
+        ChannelRoute channelRoute = plugin.getChatSyncManager().getChannelRoute();
+        sender.sendMessage(ChatColor.GRAY + "Channel Routing: " + ChatColor.WHITE +
+                (channelRoute != null
+                        ? channelRoute.describe() + " (resolved " + (System.currentTimeMillis() - channelRoute.getResolvedAt()) / 1000L + "s ago, "
+                        : "pending (") +
+                "resolutions " + plugin.getChatSyncManager().getRouteResolutionCount() +
+                ", dropped after fetch " + plugin.getChatSyncManager().getUnroutedMessageCount() + ")");
+
+        OutgoingChatQueue outgoingQueue = plugin.getChatSyncManager().getOutgoingQueue();
+        LatencyHistogram handlerTime = plugin.getMetrics().getListenerTime();
+        sender.sendMessage(ChatColor.GRAY + "Outgoing Handoff: " + ChatColor.WHITE + outgoingQueue.getDepth() +
+                "/" + outgoingQueue.getCapacity() + " (submitted " + outgoingQueue.getSubmittedCount() +
+                ", filtered " + outgoingQueue.getFilteredCount() + ", full " + outgoingQueue.getRejectedCount() +
+                ", dropped " + outgoingQueue.getDroppedCount() + ", ids " + outgoingQueue.getIdGenerator().getName() + ")");
+        sender.sendMessage(ChatColor.GRAY + "Chat Handler Time: " + ChatColor.WHITE +
+                String.format("p50 %dns, p99 %dns, max %dns",
+                        handlerTime.getValueAtQuantile(0.5), handlerTime.getValueAtQuantile(0.99), handlerTime.getMax()));
+
+        ChatHistoryCache historyCache = plugin.getChatSyncManager().getHistoryCache();
+        sender.sendMessage(ChatColor.GRAY + "Chat History: " + ChatColor.WHITE + historyCache.getChannelCount() +
+                "/" + historyCache.getMaxChannels() + " channels, " + historyCache.getSize() + " messages each");
+
+        DeliveryQueue deliveryQueue = plugin.getChatSyncManager().getDeliveryQueue();
+        sender.sendMessage(ChatColor.GRAY + "Delivery Queue: " + ChatColor.WHITE + deliveryQueue.getDepth() +
+                " (max " + deliveryQueue.getMaxDepth() + ", delivered " + deliveryQueue.getDeliveredCount() +
+                ", spilled ticks " + deliveryQueue.getSpilledTickCount() + ")");
+        sender.sendMessage(ChatColor.GRAY + "Delivery Tick Time: " + ChatColor.WHITE +
+                String.format("avg %.0fus, last %dus, max %dus (budget %dus, %d/tick)",
+                        deliveryQueue.getAverageTickMicros(), deliveryQueue.getLastTickMicros(),
+                        deliveryQueue.getMaxTickMicros(), deliveryQueue.getBudgetMicros(), deliveryQueue.getMaxPerTick()));
+
+        MessageTransport transport = plugin.getChatSyncManager().getTransport();
+        if (transport instanceof NoopTransport) {
+            sender.sendMessage(ChatColor.GRAY + "Transport: " + ChatColor.WHITE + transport.getName());
+        } else if (transport != null) {
+            sender.sendMessage(ChatColor.GRAY + "Transport: " + ChatColor.WHITE + transport.getName() + " " +
+                    (transport.isConnected() ? ChatColor.GREEN + "CONNECTED" : ChatColor.RED + "DISCONNECTED"));
+        }
+
+        RelayServer relayServer = plugin.getChatSyncManager().getRelayServer();
+        if (relayServer != null) {
+            sender.sendMessage(ChatColor.GRAY + "Relay Server: " + ChatColor.WHITE + relayServer.getClientCount() + " clients" +
+                    " (filtered " + relayServer.getFilteredCount() + ", auth failures " + relayServer.getRejectedCount() +
+                    ", overflow disconnects " + relayServer.getOverflowCount() + ")");
+        }
+
+        // データベース処理スレッド情報
+        DatabaseExecutor executor = plugin.getDatabaseManager().getExecutor();
+        if (executor != null) {
+            sender.sendMessage(ChatColor.GRAY + "DB Executor: " + ChatColor.WHITE + executor.getMode().name().toLowerCase() +
+                    " (active " + executor.getActiveCount() + "/" + executor.getMaxConcurrency() +
+                    ", queued " + executor.getQueuedCount() + "/" + executor.getQueueCapacity() +
+                    ", rejected " + executor.getRejectedCount() + ")");
+            sender.sendMessage(ChatColor.GRAY + "DB Queue Wait: " + ChatColor.WHITE +
+                    String.format("avg %.2fms, max %.2fms", executor.getAverageWaitMillis(), executor.getMaxWaitMillis()));
+        }
+
+        // 書き込みキュー情報
+        ChatMessageWriter writer = plugin.getDatabaseManager().getWriter();
+        if (writer != null) {
+            sender.sendMessage(ChatColor.GRAY + "Write Queue: " + ChatColor.WHITE + writer.getQueueSize() +
+                    " (" + writer.getOverflowPolicy().name().toLowerCase() + ", spilled pending: " + writer.getSpoolSize() + ")");
+            sender.sendMessage(ChatColor.GRAY + "Written / Dropped / Spilled: " + ChatColor.WHITE +
+                    writer.getWrittenCount() + " / " + writer.getDroppedCount() + " / " + writer.getSpilledCount());
+            sender.sendMessage(ChatColor.GRAY + "Flushes: " + ChatColor.WHITE + writer.getFlushCount() +
+                    " (failed " + writer.getFailedFlushCount() + ", rows rejected " + writer.getRejectedCount() +
+                    ", avg size " + String.format("%.1f", writer.getAverageFlushSize()) +
+                    ", max size " + writer.getMaxFlushSize() + ")");
+            sender.sendMessage(ChatColor.GRAY + "Flush Latency: " + ChatColor.WHITE +
+                    String.format("avg %.2fms, max %.2fms", writer.getAverageFlushMillis(), writer.getMaxFlushMillis()));
+            sender.sendMessage(ChatColor.GRAY + "Outage Spool: " + ChatColor.WHITE + "spooled " +
+                    writer.getSpooledDuringOutageCount() + ", replayed " + writer.getReplayedCount());
+        }
+
+        // 本文の圧縮
+        MessageCodec messageCodec = plugin.getDatabaseManager().getMessageCodec();
+        if (messageCodec != null) {
+            long rawBytes = messageCodec.getRawBytes();
+            sender.sendMessage(ChatColor.GRAY + "Message Compression: " + ChatColor.WHITE +
+                    messageCodec.getCompressedCount() + " compressed (>= " + messageCodec.getThresholdBytes() +
+                    " bytes, level " + messageCodec.getLevel() + ", " +
+                    String.format("%.1f%% of original", rawBytes > 0 ? 100.0 * messageCodec.getStoredBytes() / rawBytes : 100.0) +
+                    ", saved " + (rawBytes - messageCodec.getStoredBytes()) / 1024L + " KiB)");
+        }
+
+        // サーキットブレーカー情報
+        CircuitBreaker breaker = plugin.getDatabaseManager().getCircuitBreaker();
+        ChatColor breakerColor = breaker.isClosed() ? ChatColor.GREEN
+                : breaker.getState() == CircuitBreaker.State.OPEN ? ChatColor.RED : ChatColor.YELLOW;
+        sender.sendMessage(ChatColor.GRAY + "DB Circuit Breaker: " + breakerColor +
+                breaker.getState().name().toLowerCase().replace('_', '-') + ChatColor.WHITE +
+                " (failures " + breaker.getConsecutiveFailures() + "/" + breaker.getFailureThreshold() +
+                ", " + (System.currentTimeMillis() - breaker.getLastTransitionTime()) / 1000L + "s in state)");
+        sender.sendMessage(ChatColor.GRAY + "DB Breaker Transitions: " + ChatColor.WHITE +
+                "open " + breaker.getOpenCount() + ", half-open " + breaker.getHalfOpenCount() +
+                ", closed " + breaker.getCloseCount() + ", rejected " + breaker.getRejectedCount());
+
+        // 古いログの削除情報
+        sender.sendMessage(ChatColor.GRAY + "Partitioning: " + ChatColor.WHITE +
+                (plugin.getDatabaseManager().getPartitionManager() != null
+                        ? "daily (prune margin " + configManager.getPartitionHotWindowHours() + "h behind cursor)"
+                        : "disabled"));
+
+        RetentionPurger purger = plugin.getDatabaseManager().getRetentionPurger();
+        if (purger != null) {
+            sender.sendMessage(ChatColor.GRAY + "Retention Purge: " + ChatColor.WHITE +
+                    "last " + purger.getLastRunDeleted() + " rows in " + purger.getLastRunMillis() + "ms" +
+                    " (total " + purger.getTotalDeleted() + " rows, " + purger.getTotalMillis() + "ms, " +
+                    purger.getRunCount() + " runs, " + purger.getSkippedRunCount() + " skipped)");
+        }
 
         // チャンネル情報
         sender.sendMessage(ChatColor.GRAY + "Sync Channels: " + ChatColor.WHITE +
@@ -91,6 +266,42 @@ public class VChatSyncCommand {
                 configManager.getExcludeChannels().toString());
     }
 
+    private void handleHistory(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(configManager.getPrefix() + ChatColor.RED + "Usage: /vchatsync history <channel> [count]");
+            return;
+        }
+
+        String channelName = args[1];
+        int count = configManager.getHistoryJoinLines() > 0 ? configManager.getHistoryJoinLines() : 10;
+        if (args.length >= 3) {
+            try {
+                count = Math.min(Math.max(Integer.parseInt(args[2]), 1), MAX_HISTORY_LINES);
+            } catch (NumberFormatException e) {
+                sender.sendMessage(configManager.getPrefix() + ChatColor.RED + "Invalid count: " + args[2]);
+                return;
+            }
+        }
+
+        // バッファにある分はそのまま、足りない分のみデータベースから読み込む
+        plugin.getChatSyncManager().getHistory(channelName, count).thenAccept(messages -> {
+            if (messages.isEmpty()) {
+                sender.sendMessage(configManager.getPrefix() + ChatColor.YELLOW + "No recent chat in " + channelName);
+                return;
+            }
+
+            MessageTemplate template = configManager.getSnapshot().getDisplayTemplate();
+            sender.sendMessage(configManager.getPrefix() + ChatColor.YELLOW + "Recent chat in " + channelName +
+                    " (" + messages.size() + "):");
+            for (ChatMessage message : messages) {
+                sender.sendMessage(template.render(message));
+            }
+        }).exceptionally(throwable -> {
+            sender.sendMessage(configManager.getPrefix() + ChatColor.RED + "Failed to load chat history: " + throwable.getMessage());
+            return null;
+        });
+    }
+
     private void handleTest(CommandSender sender) {
         sender.sendMessage(configManager.getPrefix() + ChatColor.YELLOW + "Testing database connection...");
 
@@ -1,7 +1,6 @@
 package me.petoma21.lunaChatSync2.config;
 
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.ChatColor;
 import me.petoma21.lunaChatSync2.LunaChatSync2;
 import java.util.List;
 
@@ -9,15 +8,31 @@ public class ConfigManager {
 
     private final LunaChatSync2 plugin;
     private FileConfiguration config;
+    // チャット処理で参照する設定（読み込み・リロードのたびに差し替え）
+    private volatile ConfigSnapshot snapshot;
 
     public ConfigManager(LunaChatSync2 plugin) {
         this.plugin = plugin;
         loadConfig();
     }
 
+    // サーバーを起動せずに使う場合（ベンチマーク・負荷試験）
+    public ConfigManager(FileConfiguration config) {
+        this.plugin = null;
+        this.config = config;
+        loadConfig();
+    }
+
     public void loadConfig() {
-        plugin.reloadConfig();
-        config = plugin.getConfig();
+        if (plugin != null) {
+            plugin.reloadConfig();
+            config = plugin.getConfig();
+        }
+        snapshot = ConfigSnapshot.compile(config);
+    }
+
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
     }
 
     // データベース設定
@@ -61,9 +76,82 @@ public class ConfigManager {
         return config.getLong("database.pool.max-lifetime", 1800000);
     }
 
+    public int getMigrationChunkSize() {
+        return config.getInt("database.migration.chunk-size", 5000);
+    }
+
+    // パーティション設定
+    public boolean isPartitioningEnabled() {
+        return config.getBoolean("database.partitioning.enabled", false);
+    }
+
+    public int getPartitionPremakeDays() {
+        return config.getInt("database.partitioning.premake-days", 3);
+    }
+
+    public long getPartitionHotWindowHours() {
+        return config.getLong("database.partitioning.hot-window-hours", 24);
+    }
+
+    // 本文の圧縮設定
+    public boolean isCompressionEnabled() {
+        return config.getBoolean("database.compression.enabled", false);
+    }
+
+    public int getCompressionThresholdBytes() {
+        return config.getInt("database.compression.threshold-bytes", 192);
+    }
+
+    public int getCompressionLevel() {
+        return config.getInt("database.compression.level", 6);
+    }
+
+    // データベース処理用スレッド設定
+    public String getExecutorMode() {
+        return config.getString("database.executor.mode", "platform");
+    }
+
+    public int getExecutorQueueCapacity() {
+        return config.getInt("database.executor.queue-capacity", 1000);
+    }
+
+    // 書き込みキュー設定
+    public int getWriteQueueCapacity() {
+        return config.getInt("database.write-queue.capacity", 4096);
+    }
+
+    public int getWriteBatchSize() {
+        return config.getInt("database.write-queue.batch-size", 100);
+    }
+
+    public long getWriteFlushInterval() {
+        return config.getLong("database.write-queue.flush-interval", 50);
+    }
+
+    public String getWriteQueueOverflowPolicy() {
+        return config.getString("database.write-queue.overflow-policy", "block");
+    }
+
+    public long getWriteBlockTimeout() {
+        return config.getLong("database.write-queue.block-timeout", 100);
+    }
+
+    // サーキットブレーカー設定
+    public int getCircuitBreakerFailureThreshold() {
+        return config.getInt("database.circuit-breaker.failure-threshold", 3);
+    }
+
+    public long getCircuitBreakerOpenMillis() {
+        return config.getLong("database.circuit-breaker.open-duration", 5000);
+    }
+
+    public long getMaxSpoolRecords() {
+        return config.getLong("database.circuit-breaker.max-spooled", 100000);
+    }
+
     // サーバー設定
     public String getServerName() {
-        return config.getString("server.name", "lobby");
+        return snapshot.getServerName();
     }
 
     public String getServerDisplayFormat() {
@@ -76,7 +164,7 @@ public class ConfigManager {
 
     // チャット設定
     public boolean isChatSyncEnabled() {
-        return config.getBoolean("chat.enabled", true);
+        return snapshot.isChatSyncEnabled();
     }
 
     public List<String> getSyncChannels() {
@@ -88,13 +176,115 @@ public class ConfigManager {
     }
 
     public int getMaxMessageLength() {
-        return config.getInt("chat.max-message-length", 256);
+        return snapshot.getMaxMessageLength();
     }
 
     public long getSyncDelay() {
         return config.getLong("chat.sync-delay", 50);
     }
 
+    public long getPollMaxInterval() {
+        return config.getLong("chat.poll.max-interval", 2000);
+    }
+
+    public double getPollBackoffMultiplier() {
+        return Math.max(config.getDouble("chat.poll.backoff-multiplier", 2.0), 1.0);
+    }
+
+    // メインスレッドでの配信設定
+    public long getDeliveryTickBudgetMicros() {
+        return config.getLong("chat.delivery.tick-budget-micros", 2000);
+    }
+
+    public int getDeliveryMaxPerTick() {
+        return config.getInt("chat.delivery.max-per-tick", 50);
+    }
+
+    // チャットイベントから送信処理への受け渡し
+    public int getHandoffCapacity() {
+        return config.getInt("chat.handoff.capacity", 8192);
+    }
+
+    public String getIdGenerator() {
+        return config.getString("chat.id-generator", "time-ordered");
+    }
+
+    // チャット履歴設定
+    public int getHistorySize() {
+        return Math.max(config.getInt("chat.history.size", 100), 1);
+    }
+
+    public int getHistoryMaxChannels() {
+        return config.getInt("chat.history.max-channels", 32);
+    }
+
+    public int getHistoryJoinLines() {
+        return config.getInt("chat.history.join-lines", 10);
+    }
+
+    public List<String> getHistoryJoinChannels() {
+        return config.getStringList("chat.history.join-channels");
+    }
+
+    // 取りこぼし分の取得設定
+    public int getCatchUpPageSize() {
+        return Math.max(config.getInt("chat.catch-up.page-size", 500), 1);
+    }
+
+    public int getCatchUpMaxQueued() {
+        return config.getInt("chat.catch-up.max-queued", 2000);
+    }
+
+    public long getCatchUpSettleMillis() {
+        return config.getLong("chat.catch-up.settle-millis", 5000);
+    }
+
+    public long getCatchUpMaxAgeMinutes() {
+        return config.getLong("chat.catch-up.max-age-minutes", 60);
+    }
+
+    // 重複判定設定
+    public int getDedupCapacity() {
+        return config.getInt("chat.dedup.capacity", 16384);
+    }
+
+    public long getDedupWindowSeconds() {
+        return config.getLong("chat.dedup.window-seconds", 600);
+    }
+
+    // 即時配信設定
+    public String getTransportType() {
+        return config.getString("transport.type", "none");
+    }
+
+    public long getTransportCatchUpInterval() {
+        return config.getLong("transport.catch-up-interval", 1000);
+    }
+
+    public String getRelayHost() {
+        return config.getString("transport.relay.host", "127.0.0.1");
+    }
+
+    public int getRelayPort() {
+        return config.getInt("transport.relay.port", 25590);
+    }
+
+    public long getRelayReconnectDelay() {
+        return config.getLong("transport.relay.reconnect-delay", 5000);
+    }
+
+    public boolean isRelayEmbeddedServer() {
+        return config.getBoolean("transport.relay.embedded-server", false);
+    }
+
+    public String getRelayBindAddress() {
+        return config.getString("transport.relay.bind-address", "127.0.0.1");
+    }
+
+    public String getRelaySecret() {
+        return config.getString("transport.relay.secret", "");
+    }
+
     // フィルタ設定
     public List<String> getIgnoredPlayers() {
         return config.getStringList("filters.ignored-players");
@@ -117,14 +307,46 @@ public class ConfigManager {
         return config.getInt("logging.retention-days", 30);
     }
 
+    public long getPurgeIntervalMinutes() {
+        return config.getLong("logging.purge.interval-minutes", 10);
+    }
+
+    public int getPurgeChunkSize() {
+        return config.getInt("logging.purge.chunk-size", 1000);
+    }
+
+    public long getPurgeChunkPause() {
+        return config.getLong("logging.purge.chunk-pause", 200);
+    }
+
+    public long getPurgeTimeBudget() {
+        return config.getLong("logging.purge.time-budget", 10000);
+    }
+
     public boolean isDebugEnabled() {
-        return config.getBoolean("logging.debug", false);
+        return snapshot.isDebugEnabled();
+    }
+
+    // 計測値の公開設定
+    public boolean isMetricsHttpEnabled() {
+        return config.getBoolean("metrics.http.enabled", false);
+    }
+
+    public String getMetricsHttpBindAddress() {
+        return config.getString("metrics.http.bind-address", "127.0.0.1");
+    }
+
+    public int getMetricsHttpPort() {
+        return config.getInt("metrics.http.port", 9465);
     }
 
     // メッセージ設定
     public String getMessage(String key) {
-        String message = config.getString("messages." + key, "Message not found: " + key);
-        return ChatColor.translateAlternateColorCodes('&', message);
+        return snapshot.getMessage(key);
+    }
+
+    public String getMessage(String key, String defaultMessage) {
+        return snapshot.getMessage(key, defaultMessage);
     }
 
     public String getPrefix() {
@@ -133,55 +355,21 @@ public class ConfigManager {
 
     // サーバー名のフォーマット処理
     public String formatServerName(String serverName) {
-        String format = getServerDisplayFormat();
-        String color = ChatColor.translateAlternateColorCodes('&', getServerColor());
-        return color + format.replace("%server%", serverName) + ChatColor.RESET;
+        return snapshot.formatServerName(serverName);
     }
 
     // チャンネルが同期対象かチェック
     public boolean shouldSyncChannel(String channelName) {
-        if (!isChatSyncEnabled()) {
-            return false;
-        }
-
-        // 除外リストに含まれている場合
-        if (getExcludeChannels().contains(channelName)) {
-            return false;
-        }
-
-        // 管理者チャンネルの自動除外
-        if (isExcludeAdminChannels() && isAdminChannel(channelName)) {
-            return false;
-        }
-
-        // 同期チャンネルリストが空の場合は全て同期
-        List<String> syncChannels = getSyncChannels();
-        if (syncChannels.isEmpty()) {
-            return true;
-        }
-
-        return syncChannels.contains(channelName);
-    }
-
-    private boolean isAdminChannel(String channelName) {
-        String lowerName = channelName.toLowerCase();
-        return lowerName.contains("admin") || lowerName.contains("staff") ||
-                lowerName.contains("mod") || lowerName.contains("operator");
+        return snapshot.shouldSyncChannel(channelName);
     }
 
     // プレイヤーが無視対象かチェック
     public boolean isPlayerIgnored(String playerName) {
-        return getIgnoredPlayers().contains(playerName);
+        return snapshot.isPlayerIgnored(playerName);
     }
 
     // メッセージに無視ワードが含まれているかチェック
     public boolean containsIgnoredWords(String message) {
-        String lowerMessage = message.toLowerCase();
-        for (String word : getIgnoredWords()) {
-            if (lowerMessage.contains(word.toLowerCase())) {
-                return true;
-            }
-        }
-        return false;
+        return snapshot.containsIgnoredWords(message);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,209 @@
+package me.petoma21.lunaChatSync2.config;
+
+import me.petoma21.lunaChatSync2.filter.WordMatcher;
+import me.petoma21.lunaChatSync2.models.ChannelSubscription;
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// チャットの処理ごとに参照する設定を、読み込み時に一度だけ変換した不変のスナップショット
+// リロード時は新しいスナップショットを作って差し替えるため、参照側はロックもYAMLの読み込みも不要
+public final class ConfigSnapshot {
+
+    // チャンネル判定結果のキャッシュ上限（チャンネル名が際限なく増えた場合の保険）
+    private static final int MAX_CACHED_CHANNELS = 1024;
+
+    private final boolean chatSyncEnabled;
+    private final boolean debugEnabled;
+    private final String serverName;
+    private final int maxMessageLength;
+
+    private final Set<String> syncChannels;
+    private final Set<String> excludeChannels;
+    private final boolean excludeAdminChannels;
+    // 他サーバーへ通知する受信範囲（管理者チャンネルの自動除外は名前が分からないため含めず、受信側で判定する）
+    private final ChannelSubscription subscription;
+    private final Set<String> ignoredPlayers;
+    private final List<String> ignoredWords;
+    private final WordMatcher ignoredWordMatcher;
+
+    // 色コード変換済みの文字列
+    private final MessageTemplate displayTemplate;
+    private final Map<String, String> messages;
+
+    private final ConcurrentHashMap<String, Boolean> channelDecisions = new ConcurrentHashMap<>();
+
+    private ConfigSnapshot(ConfigurationSection config) {
+        this.chatSyncEnabled = config.getBoolean("chat.enabled", true);
+        this.debugEnabled = config.getBoolean("logging.debug", false);
+        this.serverName = config.getString("server.name", "lobby");
+        this.maxMessageLength = config.getInt("chat.max-message-length", 256);
+
+        this.syncChannels = Set.copyOf(config.getStringList("chat.sync-channels"));
+        this.excludeChannels = Set.copyOf(config.getStringList("chat.exclude-channels"));
+        this.excludeAdminChannels = config.getBoolean("filters.exclude-admin-channels", true);
+        this.subscription = syncChannels.isEmpty()
+                ? ChannelSubscription.exclude(excludeChannels)
+                : ChannelSubscription.include(syncChannels.stream().filter(this::decideChannel).toList());
+        this.ignoredPlayers = Set.copyOf(config.getStringList("filters.ignored-players"));
+
+        this.ignoredWords = List.copyOf(config.getStringList("filters.ignored-words"));
+        this.ignoredWordMatcher = WordMatcher.compile(ignoredWords,
+                config.getBoolean("filters.ignore-separators", false),
+                config.getBoolean("filters.leetspeak", false));
+
+        this.displayTemplate = MessageTemplate.compile(
+                config.getString("chat.display-format", "%server% <%player%> %message%"),
+                config.getString("server.color", "&a"),
+                config.getString("server.display-format", "@[%server%]"));
+
+        Map<String, String> translated = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("messages");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                String message = section.getString(key);
+                if (message != null) {
+                    translated.put(key, ChatColor.translateAlternateColorCodes('&', message));
+                }
+            }
+        }
+        this.messages = Map.copyOf(translated);
+    }
+
+    public static ConfigSnapshot compile(ConfigurationSection config) {
+        return new ConfigSnapshot(config);
+    }
+
+    public boolean isChatSyncEnabled() {
+        return chatSyncEnabled;
+    }
+
+    public boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    public Set<String> getSyncChannels() {
+        return syncChannels;
+    }
+
+    public Set<String> getExcludeChannels() {
+        return excludeChannels;
+    }
+
+    public ChannelSubscription getSubscription() {
+        return subscription;
+    }
+
+    public String getMessage(String key) {
+        String message = messages.get(key);
+        return message != null ? message : "Message not found: " + key;
+    }
+
+    // 以前の config.yml に無いキー用（defaultMessage も & の色コードを変換する）
+    public String getMessage(String key, String defaultMessage) {
+        String message = messages.get(key);
+        return message != null ? message : ChatColor.translateAlternateColorCodes('&', defaultMessage);
+    }
+
+    public String formatServerName(String serverName) {
+        return displayTemplate.serverPrefix(serverName);
+    }
+
+    public MessageTemplate getDisplayTemplate() {
+        return displayTemplate;
+    }
+
+    // ローカルの発言を同期するか（権限の判定は呼び出し側で行う）
+    public boolean shouldSyncMessage(String playerName, String channelName, String message) {
+        // プラグインが無効な場合
+        if (!chatSyncEnabled) {
+            return false;
+        }
+
+        // 無視対象のプレイヤーかチェック
+        if (isPlayerIgnored(playerName)) {
+            return false;
+        }
+
+        // チャンネルが同期対象かチェック
+        if (!shouldSyncChannel(channelName)) {
+            return false;
+        }
+
+        // メッセージに無視ワードが含まれているかチェック
+        if (containsIgnoredWords(message)) {
+            return false;
+        }
+
+        // メッセージ長制限チェック
+        return message.length() <= maxMessageLength;
+    }
+
+    // チャンネルが同期対象かチェック（結果はチャンネル名ごとにキャッシュ）
+    public boolean shouldSyncChannel(String channelName) {
+        if (!chatSyncEnabled) {
+            return false;
+        }
+
+        Boolean cached = channelDecisions.get(channelName);
+        if (cached != null) {
+            return cached;
+        }
+
+        boolean decision = decideChannel(channelName);
+        if (channelDecisions.size() < MAX_CACHED_CHANNELS) {
+            channelDecisions.put(channelName, decision);
+        }
+        return decision;
+    }
+
+    private boolean decideChannel(String channelName) {
+        // 除外リストに含まれている場合
+        if (excludeChannels.contains(channelName)) {
+            return false;
+        }
+
+        // 管理者チャンネルの自動除外
+        if (excludeAdminChannels && isAdminChannel(channelName)) {
+            return false;
+        }
+
+        // 同期チャンネルリストが空の場合は全て同期
+        return syncChannels.isEmpty() || syncChannels.contains(channelName);
+    }
+
+    private static boolean isAdminChannel(String channelName) {
+        String lowerName = channelName.toLowerCase();
+        return lowerName.contains("admin") || lowerName.contains("staff") ||
+                lowerName.contains("mod") || lowerName.contains("operator");
+    }
+
+    public boolean isPlayerIgnored(String playerName) {
+        return ignoredPlayers.contains(playerName);
+    }
+
+    public boolean containsIgnoredWords(String message) {
+        return ignoredWordMatcher.matches(message);
+    }
+
+    public List<String> getIgnoredWords() {
+        return ignoredWords;
+    }
+
+    public WordMatcher getIgnoredWordMatcher() {
+        return ignoredWordMatcher;
+    }
+}
@@ -0,0 +1,102 @@
+package me.petoma21.lunaChatSync2.config;
+
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+import org.bukkit.ChatColor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 受信メッセージの表示形式。設定の読み込み時に一度だけ解析し、配信時は区切られた部品を順に追記するだけにする
+// 使用できるプレースホルダー: %server%（サーバー名の表示形式を適用したもの） %player% %channel% %message%
+public final class MessageTemplate {
+
+    private static final int LITERAL = 0;
+    private static final int SERVER = 1;
+    private static final int PLAYER = 2;
+    private static final int CHANNEL = 3;
+    private static final int MESSAGE = 4;
+
+    private static final String[] PLACEHOLDERS = {null, "%server%", "%player%", "%channel%", "%message%"};
+
+    // 送信元サーバーごとのプレフィックスのキャッシュ上限
+    private static final int MAX_CACHED_SERVERS = 256;
+
+    private final int[] kinds;
+    private final String[] literals;
+    private final String serverColor;
+    private final String serverDisplayFormat;
+    private final ConcurrentHashMap<String, String> serverPrefixes = new ConcurrentHashMap<>();
+
+    private MessageTemplate(String format, String serverColor, String serverDisplayFormat) {
+        this.serverColor = ChatColor.translateAlternateColorCodes('&', serverColor);
+        this.serverDisplayFormat = serverDisplayFormat;
+
+        String translated = ChatColor.translateAlternateColorCodes('&', format);
+        List<Integer> kindList = new ArrayList<>();
+        List<String> literalList = new ArrayList<>();
+
+        int position = 0;
+        while (position < translated.length()) {
+            int nextIndex = -1;
+            int nextKind = LITERAL;
+            for (int kind = SERVER; kind <= MESSAGE; kind++) {
+                int index = translated.indexOf(PLACEHOLDERS[kind], position);
+                if (index >= 0 && (nextIndex < 0 || index < nextIndex)) {
+                    nextIndex = index;
+                    nextKind = kind;
+                }
+            }
+
+            if (nextIndex < 0) {
+                kindList.add(LITERAL);
+                literalList.add(translated.substring(position));
+                break;
+            }
+            if (nextIndex > position) {
+                kindList.add(LITERAL);
+                literalList.add(translated.substring(position, nextIndex));
+            }
+            kindList.add(nextKind);
+            literalList.add(null);
+            position = nextIndex + PLACEHOLDERS[nextKind].length();
+        }
+
+        this.kinds = kindList.stream().mapToInt(Integer::intValue).toArray();
+        this.literals = literalList.toArray(new String[0]);
+    }
+
+    public static MessageTemplate compile(String format, String serverColor, String serverDisplayFormat) {
+        return new MessageTemplate(format, serverColor, serverDisplayFormat);
+    }
+
+    // builder の末尾に表示用の文字列を追記する
+    public StringBuilder render(StringBuilder builder, ChatMessage message) {
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case SERVER -> builder.append(serverPrefix(message.getServerName()));
+                case PLAYER -> builder.append(message.getPlayerName());
+                case CHANNEL -> builder.append(message.getChannelName());
+                case MESSAGE -> builder.append(message.getMessage());
+                default -> builder.append(literals[i]);
+            }
+        }
+        return builder;
+    }
+
+    public String render(ChatMessage message) {
+        return render(new StringBuilder(128), message).toString();
+    }
+
+    // サーバー名の表示形式（色コード変換済み）。送信元サーバーごとにキャッシュ
+    public String serverPrefix(String serverName) {
+        String prefix = serverPrefixes.get(serverName);
+        if (prefix == null) {
+            prefix = serverColor + serverDisplayFormat.replace("%server%", serverName) + ChatColor.RESET;
+            if (serverPrefixes.size() < MAX_CACHED_SERVERS) {
+                serverPrefixes.put(serverName, prefix);
+            }
+        }
+        return prefix;
+    }
+}
@@ -0,0 +1,85 @@
+package me.petoma21.lunaChatSync2.database;
+
+import me.petoma21.lunaChatSync2.models.ChannelSubscription;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+
+// 受信するチャンネルを sync_channels のIDに解決したもの（chat_messages の取得条件）
+// INCLUDE は idx_channel (channel_id, id) の範囲スキャンになり、対象外のチャンネルの行は読まない
+// EXCLUDE は解決時点で存在したチャンネルのみを除外する。後から作られたチャンネルは受信側の判定で落とし、
+// ChatSyncManager が解決し直す
+public final class ChannelRoute {
+
+    public static final ChannelRoute ALL = new ChannelRoute(ChannelSubscription.Mode.ALL, new int[0], Set.of());
+
+    private final ChannelSubscription.Mode mode;
+    private final int[] channelIds;
+    // 条件で絞り込み済みのチャンネル名（INCLUDE は受信する側、EXCLUDE は除外する側）
+    private final Set<String> channelNames;
+    private final String condition;
+    private final long resolvedAt;
+
+    ChannelRoute(ChannelSubscription.Mode mode, int[] channelIds, Set<String> channelNames) {
+        this.mode = mode;
+        this.channelIds = channelIds;
+        this.channelNames = channelNames;
+        this.condition = buildCondition(mode, channelIds.length);
+        this.resolvedAt = System.currentTimeMillis();
+    }
+
+    private static String buildCondition(ChannelSubscription.Mode mode, int count) {
+        if (mode == ChannelSubscription.Mode.ALL) {
+            return "";
+        }
+        String placeholders = String.join(", ", Collections.nCopies(count, "?"));
+        return mode == ChannelSubscription.Mode.INCLUDE
+                ? " AND channel_id IN (" + placeholders + ")"
+                : " AND channel_id NOT IN (" + placeholders + ")";
+    }
+
+    // 受信するチャンネルが1つも無い（取得不要）
+    public boolean isEmpty() {
+        return mode == ChannelSubscription.Mode.INCLUDE && channelIds.length == 0;
+    }
+
+    // このチャンネルの行が取得条件で既に判定されているか
+    public boolean covers(String channelName) {
+        return mode == ChannelSubscription.Mode.INCLUDE || channelNames.contains(channelName);
+    }
+
+    String getCondition() {
+        return condition;
+    }
+
+    // index からIDを設定し、次の位置を返す
+    int bind(PreparedStatement statement, int index) throws SQLException {
+        for (int channelId : channelIds) {
+            statement.setInt(index++, channelId);
+        }
+        return index;
+    }
+
+    public ChannelSubscription.Mode getMode() {
+        return mode;
+    }
+
+    public int getChannelCount() {
+        return channelIds.length;
+    }
+
+    public long getResolvedAt() {
+        return resolvedAt;
+    }
+
+    // 状態表示用
+    public String describe() {
+        return switch (mode) {
+            case ALL -> "all channels";
+            case INCLUDE -> channelIds.length + " channel(s) via idx_channel";
+            case EXCLUDE -> "all except " + channelIds.length + " channel(s)";
+        };
+    }
+}
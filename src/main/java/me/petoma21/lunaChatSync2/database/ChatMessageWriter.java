@@ -0,0 +1,403 @@
+package me.petoma21.lunaChatSync2.database;
+
+import me.petoma21.lunaChatSync2.config.ConfigManager;
+import me.petoma21.lunaChatSync2.metrics.SyncMetrics;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// 送信メッセージを溜めて、件数または時間でまとめてINSERTする書き込みスレッド
+// データベース障害中は退避ファイルへ書き出し、復旧後に古い順に再送する（message_id により重複しない）
+// 一時的な障害（接続断・タイムアウト等）のみ退避して再試行する。特定の行が拒否された場合は、
+// バッチを分割してその行だけを破棄し、残りを書き込む（再試行しても成功しないため）
+public class ChatMessageWriter implements Runnable {
+
+    // 一時的な障害が続く間の再試行間隔の上限
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5000L;
+
+    public enum OverflowPolicy {
+        BLOCK,
+        DROP_OLDEST,
+        SPILL;
+
+        public static OverflowPolicy fromString(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                return BLOCK;
+            }
+        }
+    }
+
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private final SyncMetrics metrics;
+    private final DatabaseManager databaseManager;
+    private final BlockingQueue<ChatMessage> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long blockTimeoutMillis;
+    private final long maxSpoolRecords;
+    // SPILL の場合、キューの空きがこれ以下になったら書き込みスレッドがキューの中身を退避ファイルへ移す
+    private final int spillHeadroom;
+    private final MessageSpool spool;
+    private Thread thread;
+    private volatile boolean running;
+    // 再試行の待ち（書き込みスレッドのみが使う）
+    private int consecutiveFailures;
+    private long retryAt;
+
+    // 統計
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder spooledDuringOutage = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushSize = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public ChatMessageWriter(DatabaseManager databaseManager) {
+        this.logger = databaseManager.getLogger();
+        this.configManager = databaseManager.getConfigManager();
+        this.metrics = databaseManager.getMetrics();
+        this.databaseManager = databaseManager;
+        this.queue = new ArrayBlockingQueue<>(Math.max(configManager.getWriteQueueCapacity(), 1));
+        this.overflowPolicy = OverflowPolicy.fromString(configManager.getWriteQueueOverflowPolicy());
+        this.batchSize = Math.max(configManager.getWriteBatchSize(), 1);
+        this.flushIntervalMillis = Math.max(configManager.getWriteFlushInterval(), 1L);
+        this.blockTimeoutMillis = Math.max(configManager.getWriteBlockTimeout(), 0L);
+        this.maxSpoolRecords = Math.max(configManager.getMaxSpoolRecords(), 1L);
+        this.spillHeadroom = Math.max(configManager.getWriteQueueCapacity() / 4, 1);
+        this.spool = new MessageSpool(new File(databaseManager.getDataFolder(), "spill.dat"));
+    }
+
+    public void start() throws IOException {
+        spool.open();
+        running = true;
+        thread = new Thread(this, "LunaChatSync2-Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean enqueue(ChatMessage message) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!queue.offer(message)) {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                }
+                break;
+            case SPILL:
+                // 退避ファイルへの書き込みは書き込みスレッドだけが行う（順序を保ち、チャットのスレッドでファイルI/Oをしない）
+                // 書き込みスレッドが移し終えるまでにキューが満杯になった場合は破棄する
+                if (!queue.offer(message)) {
+                    dropped.increment();
+                    return false;
+                }
+                break;
+            default:
+                try {
+                    if (!queue.offer(message, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        dropped.increment();
+                        return false;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                    return false;
+                }
+                break;
+        }
+
+        enqueued.increment();
+        return true;
+    }
+
+    @Override
+    public void run() {
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                // 退避ファイルの再送中は待たずに続ける（失敗後の待ち時間中を除く）
+                if (!spool.isEmpty() && databaseManager.getCircuitBreaker().isClosed() && !isBackingOff()) {
+                    queue.drainTo(batch, batchSize);
+                } else {
+                    collectBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+
+            // 書き込みが追いつかずキューが満杯に近づいた場合は、まとめて退避ファイルへ移し、以降はそこから順に書き込む
+            if (overflowPolicy == OverflowPolicy.SPILL && queue.remainingCapacity() <= spillHeadroom) {
+                queue.drainTo(batch);
+                spoolBatch(batch, spilled);
+                batch.clear();
+            }
+
+            if (!spool.isEmpty()) {
+                // 退避ファイルに残りがある間は、順序を保つため新しいメッセージもその後ろへ追記する
+                if (!batch.isEmpty()) {
+                    spoolBatch(batch, spooledDuringOutage);
+                    batch.clear();
+                }
+                replaySpool();
+            } else if (!batch.isEmpty()) {
+                if (isBackingOff() || !databaseManager.isAvailable() || !write(batch)) {
+                    spoolBatch(batch, spooledDuringOutage);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private boolean isBackingOff() {
+        return consecutiveFailures > 0 && System.currentTimeMillis() < retryAt;
+    }
+
+    // 一時的な障害の後は flush-interval から倍々に、最大 MAX_RETRY_BACKOFF_MILLIS まで待ってから再試行する
+    private void backOff() {
+        consecutiveFailures++;
+        long delay = Math.min(flushIntervalMillis << Math.min(consecutiveFailures, 16), MAX_RETRY_BACKOFF_MILLIS);
+        retryAt = System.currentTimeMillis() + delay;
+    }
+
+    // 最初の1件から flush-interval 経過するか batch-size に達するまで集める
+    private void collectBatch(List<ChatMessage> batch) throws InterruptedException {
+        ChatMessage first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize) {
+                break;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+
+            ChatMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void spoolBatch(List<ChatMessage> batch, LongAdder counter) {
+        // 長時間の障害でディスクを使い切らないよう上限を設ける
+        if (spool.getPendingRecords() + batch.size() > maxSpoolRecords) {
+            dropped.add(batch.size());
+            logger.warning("Spill file is full (" + maxSpoolRecords + " messages), dropped " + batch.size() + " chat messages");
+            return;
+        }
+
+        try {
+            spool.appendAll(batch);
+            counter.add(batch.size());
+        } catch (IOException e) {
+            dropped.add(batch.size());
+            logger.log(Level.SEVERE, "Failed to spool " + batch.size() + " chat messages", e);
+        }
+    }
+
+    // 退避ファイルの先頭から1回分を再送する。失敗した場合は消費せず、次の試行で同じレコードから再送する
+    private void replaySpool() {
+        if (isBackingOff() || !databaseManager.isAvailable()) {
+            return;
+        }
+
+        List<ChatMessage> pending;
+        try {
+            pending = spool.read(batchSize);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to read spilled chat messages", e);
+            // 再送を続けると待たずに失敗を繰り返すため、障害時と同じく間隔を空ける
+            backOff();
+            return;
+        }
+
+        // 拒否された行は write() で破棄されるため、成功すればその行も含めて消費済みにする
+        if (!pending.isEmpty() && !write(pending)) {
+            return;
+        }
+
+        try {
+            spool.commit();
+            replayed.add(pending.size());
+            if (spool.isEmpty()) {
+                logger.info("Replayed all spooled chat messages");
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to update spill file", e);
+            backOff();
+        }
+    }
+
+    // バッチを書き込む。false は一時的な障害で、呼び出し元が退避・再試行する
+    // 一時的でない失敗はバッチを半分ずつに分けて書き込み直し、1件でも拒否される行は破棄する
+    // （分割後に一時的な障害が起きた場合は、書き込み済みの行も含めて再試行する。message_id により重複しない）
+    private boolean write(List<ChatMessage> batch) {
+        SQLException failure = flush(batch);
+        if (failure == null) {
+            consecutiveFailures = 0;
+            return true;
+        }
+        if (DatabaseManager.isTransient(failure)) {
+            backOff();
+            return false;
+        }
+
+        if (batch.size() == 1) {
+            ChatMessage message = batch.get(0);
+            rejected.increment();
+            logger.log(Level.WARNING, "Database rejected chat message " + message.getMessageId() + " from " +
+                    message.getPlayerName() + " in " + message.getChannelName() + ", dropping it", failure);
+            return true;
+        }
+        int middle = batch.size() / 2;
+        return write(batch.subList(0, middle)) && write(batch.subList(middle, batch.size()));
+    }
+
+    // 失敗した場合はその例外を返す
+    private SQLException flush(List<ChatMessage> batch) {
+        long start = System.nanoTime();
+        try {
+            databaseManager.insertMessages(batch);
+            written.add(batch.size());
+            metrics.getMessagesInserted().add(batch.size());
+
+            if (configManager.isDebugEnabled()) {
+                logger.info("Flushed " + batch.size() + " chat messages");
+            }
+            return null;
+        } catch (SQLException e) {
+            failedFlushes.increment();
+            metrics.getInsertErrors().increment();
+            // 遮断後はデータベース側でまとめて記録するため、個別の失敗は遮断前のみ表示
+            if (DatabaseManager.isTransient(e) && (databaseManager.getCircuitBreaker().isClosed() || configManager.isDebugEnabled())) {
+                logger.log(Level.WARNING, "Failed to save " + batch.size() + " chat messages, spooling to disk", e);
+            }
+            return e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.getInsertLatency().record(elapsed / 1000L);
+            flushes.increment();
+            flushNanos.add(elapsed);
+            maxFlushSize.accumulateAndGet(batch.size(), Math::max);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    public void shutdown() {
+        // 停止要求後もキューに残ったメッセージは書き出してから終了する
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            spool.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to close spill file", e);
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getSpoolSize() {
+        return spool.getPendingRecords();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushes.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getSpooledDuringOutageCount() {
+        return spooledDuringOutage.sum();
+    }
+
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+
+    public double getAverageFlushSize() {
+        long count = flushes.sum();
+        return count == 0 ? 0.0 : (double) (written.sum()) / count;
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushes.sum();
+        return count == 0 ? 0.0 : flushNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public long getMaxFlushSize() {
+        return maxFlushSize.get();
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,139 @@
+package me.petoma21.lunaChatSync2.database;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// データベース障害時に接続タイムアウトを待たずに即座に失敗させる
+// CLOSED: 通常 / OPEN: 連続失敗が閾値に達したため open-duration の間は要求を通さない
+// HALF_OPEN: open-duration 経過後、接続確認を1件だけ行っている間。成功すれば CLOSED、失敗すれば再び OPEN
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicLong lastTransitionAt = new AtomicLong(System.currentTimeMillis());
+
+    // 状態遷移の回数
+    private final AtomicLong openCount = new AtomicLong();
+    private final AtomicLong halfOpenCount = new AtomicLong();
+    private final AtomicLong closeCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.openMillis = Math.max(openMillis, 0L);
+    }
+
+    // 通常の要求を通してよいか（CLOSED のときのみ）。状態の確認にも使うため、ここでは拒否数を数えない
+    public boolean allowRequest() {
+        return state.get() == State.CLOSED;
+    }
+
+    // 遮断中のため実際に要求を拒否したときに呼ぶ
+    public void recordRejected() {
+        rejectedCount.incrementAndGet();
+    }
+
+    // open-duration を過ぎていれば HALF_OPEN へ移行する。true を受け取った1スレッドだけが接続確認を行う
+    public boolean tryHalfOpen() {
+        if (state.get() != State.OPEN || System.currentTimeMillis() - openedAt.get() < openMillis) {
+            return false;
+        }
+        if (!state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return false;
+        }
+        halfOpenCount.incrementAndGet();
+        lastTransitionAt.set(System.currentTimeMillis());
+        return true;
+    }
+
+    // 通常の要求の結果は CLOSED のときだけ数える
+    // OPEN・HALF_OPEN 中に届くのは遮断前に開始した処理の遅れた完了のため、状態の判定に使わない
+    // （HALF_OPEN からの遷移は recordProbeSuccess / recordProbeFailure でのみ行う）
+    public void recordSuccess() {
+        if (state.get() == State.CLOSED) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    public void recordFailure() {
+        if (state.get() != State.CLOSED) {
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    // tryHalfOpen() が true を返したスレッドが開始した接続確認の結果
+    public void recordProbeSuccess() {
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            consecutiveFailures.set(0);
+            closeCount.incrementAndGet();
+            lastTransitionAt.set(System.currentTimeMillis());
+        }
+    }
+
+    public void recordProbeFailure() {
+        consecutiveFailures.incrementAndGet();
+        open(State.HALF_OPEN);
+    }
+
+    private void open(State expected) {
+        if (state.compareAndSet(expected, State.OPEN)) {
+            long now = System.currentTimeMillis();
+            openedAt.set(now);
+            lastTransitionAt.set(now);
+            openCount.incrementAndGet();
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public boolean isClosed() {
+        return state.get() == State.CLOSED;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public long getLastTransitionTime() {
+        return lastTransitionAt.get();
+    }
+
+    public long getOpenCount() {
+        return openCount.get();
+    }
+
+    public long getHalfOpenCount() {
+        return halfOpenCount.get();
+    }
+
+    public long getCloseCount() {
+        return closeCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+}
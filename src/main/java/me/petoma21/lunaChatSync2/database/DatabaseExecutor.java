@@ -0,0 +1,247 @@
+package me.petoma21.lunaChatSync2.database;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// JDBC処理専用のExecutor。共有のForkJoinPool.commonPool()を使わず、同時実行数を接続プールの上限に合わせる
+public class DatabaseExecutor implements Executor {
+
+    // VIRTUAL は JDBC ドライバが synchronized で通信しない場合のみ有効（Connector/J 8.0 ではキャリアスレッドを占有する）
+    public enum Mode {
+        VIRTUAL,
+        PLATFORM;
+
+        public static Mode fromString(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return PLATFORM;
+            }
+        }
+    }
+
+    private final Mode mode;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final ExecutorService delegate;
+    // 仮想スレッドモードでの同時実行数制限
+    private final Semaphore permits;
+
+    // 統計
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public DatabaseExecutor(Mode mode, int maxConcurrency, int queueCapacity) {
+        this.mode = mode;
+        this.maxConcurrency = Math.max(maxConcurrency, 1);
+        this.queueCapacity = Math.max(queueCapacity, 1);
+
+        if (mode == Mode.VIRTUAL) {
+            ThreadFactory factory = Thread.ofVirtual().name("LunaChatSync2-DB-", 0).factory();
+            this.delegate = Executors.newThreadPerTaskExecutor(factory);
+            this.permits = new Semaphore(this.maxConcurrency, true);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "LunaChatSync2-DB-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(this.maxConcurrency, this.maxConcurrency,
+                    60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(this.queueCapacity), factory);
+            pool.allowCoreThreadTimeOut(true);
+            this.delegate = pool;
+            this.permits = null;
+        }
+    }
+
+    // supplier を実行し、その結果で完了する Future を返す
+    // 受け付けられなかった場合だけでなく、停止時に実行されずに終わった場合（待機中の割り込み・キューに残ったタスク）も
+    // 失敗として完了するため、join() した呼び出し元が待ち続けることはない
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        SupplyTask<T> task = new SupplyTask<>(supplier);
+        try {
+            execute(task);
+        } catch (RejectedExecutionException e) {
+            task.abort(e);
+        }
+        return task.future;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new RejectedExecutionException("Database executor queue is full (" + queueCapacity + ")");
+        }
+
+        long submittedAt = System.nanoTime();
+        try {
+            delegate.execute(new QueuedTask(command, submittedAt));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private void runTask(Runnable command, long submittedAt) {
+        boolean acquired = false;
+        try {
+            if (permits != null) {
+                permits.acquire();
+                acquired = true;
+            }
+
+            queued.decrementAndGet();
+            long waited = System.nanoTime() - submittedAt;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            active.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                active.decrementAndGet();
+                completed.increment();
+            }
+        } catch (InterruptedException e) {
+            // 同時実行数の空きを待つ間に停止された。実行しないまま失敗として完了させる
+            queued.decrementAndGet();
+            rejected.increment();
+            abort(command);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (acquired) {
+                permits.release();
+            }
+        }
+    }
+
+    private static void abort(Runnable command) {
+        if (command instanceof SupplyTask<?> task) {
+            task.abort(new RejectedExecutionException("Database executor shut down before the task started"));
+        }
+    }
+
+    public void shutdown(long timeoutMillis) {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                abortQueued(delegate.shutdownNow());
+            }
+        } catch (InterruptedException e) {
+            abortQueued(delegate.shutdownNow());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // shutdownNow() で実行されずに取り除かれたタスク（通常スレッドモードのキュー）を失敗させる
+    private void abortQueued(List<Runnable> remaining) {
+        for (Runnable runnable : remaining) {
+            if (runnable instanceof QueuedTask task) {
+                queued.decrementAndGet();
+                rejected.increment();
+                abort(task.command);
+            }
+        }
+    }
+
+    private final class QueuedTask implements Runnable {
+        private final Runnable command;
+        private final long submittedAt;
+
+        QueuedTask(Runnable command, long submittedAt) {
+            this.command = command;
+            this.submittedAt = submittedAt;
+        }
+
+        @Override
+        public void run() {
+            runTask(command, submittedAt);
+        }
+    }
+
+    // CompletableFuture.supplyAsync と同じく、例外は CompletionException に包んで完了する
+    private static final class SupplyTask<T> implements Runnable {
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        SupplyTask(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable t) {
+                abort(t);
+            }
+        }
+
+        void abort(Throwable cause) {
+            future.completeExceptionally(cause instanceof CompletionException ? cause : new CompletionException(cause));
+        }
+    }
+
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getQueuedCount() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = completed.sum() + active.get();
+        return count == 0 ? 0.0 : waitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+}
@@ -4,33 +4,93 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import me.petoma21.lunaChatSync2.LunaChatSync2;
 import me.petoma21.lunaChatSync2.config.ConfigManager;
+import me.petoma21.lunaChatSync2.config.ConfigSnapshot;
+import me.petoma21.lunaChatSync2.metrics.SyncMetrics;
+import me.petoma21.lunaChatSync2.models.ChannelSubscription;
 import me.petoma21.lunaChatSync2.models.ChatMessage;
+import me.petoma21.lunaChatSync2.util.MessageCodec;
+import me.petoma21.lunaChatSync2.util.UuidBytes;
 
+import java.io.File;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class DatabaseManager {
 
+    // ベンチマークなどプラグイン外で使う場合はnull（定期削除は行わない）
     private final LunaChatSync2 plugin;
+    private final Logger logger;
     private final ConfigManager configManager;
+    private final SyncMetrics metrics;
+    private final File dataFolder;
     private HikariDataSource dataSource;
+    private ChatMessageWriter writer;
+    private final LookupTable servers = new LookupTable("sync_servers");
+    private final LookupTable channels = new LookupTable("sync_channels");
+    private DatabaseExecutor executor;
+    private RetentionPurger retentionPurger;
+    // パーティション分割を使わない場合はnull
+    private PartitionManager partitionManager;
+    // 全てのデータベース処理で共有する。遮断中はタイムアウトを待たずに失敗させる
+    private final CircuitBreaker circuitBreaker;
+    // 本文を圧縮して保存しない場合はnull（読み込みは設定に関係なく圧縮済みの行を展開する）
+    private final MessageCodec messageCodec;
+    private final AtomicBoolean probeInFlight = new AtomicBoolean(false);
+
+    // SQLException を投げる JDBC 処理
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T call() throws SQLException;
+    }
 
     public DatabaseManager(LunaChatSync2 plugin) {
+        this(plugin, plugin.getLogger(), plugin.getConfigManager(), plugin.getMetrics(), plugin.getDataFolder());
+    }
+
+    // サーバーを起動せずに使う場合（ベンチマーク・負荷試験）
+    public DatabaseManager(Logger logger, ConfigManager configManager, SyncMetrics metrics, File dataFolder) {
+        this(null, logger, configManager, metrics, dataFolder);
+    }
+
+    private DatabaseManager(LunaChatSync2 plugin, Logger logger, ConfigManager configManager,
+                            SyncMetrics metrics, File dataFolder) {
         this.plugin = plugin;
-        this.configManager = plugin.getConfigManager();
+        this.logger = logger;
+        this.configManager = configManager;
+        this.metrics = metrics;
+        this.dataFolder = dataFolder;
+        this.circuitBreaker = new CircuitBreaker(configManager.getCircuitBreakerFailureThreshold(),
+                configManager.getCircuitBreakerOpenMillis());
+        this.messageCodec = configManager.isCompressionEnabled()
+                ? new MessageCodec(configManager.getCompressionThresholdBytes(), configManager.getCompressionLevel())
+                : null;
     }
 
     public boolean initialize() {
         try {
+            executor = new DatabaseExecutor(
+                    DatabaseExecutor.Mode.fromString(configManager.getExecutorMode()),
+                    configManager.getMaximumPoolSize(),
+                    configManager.getExecutorQueueCapacity());
             setupHikariCP();
             createTables();
-            cleanupOldMessages();
+            startRetentionPurge();
+
+            writer = new ChatMessageWriter(this);
+            writer.start();
             return true;
         } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to initialize database", e);
+            logger.log(Level.SEVERE, "Failed to initialize database", e);
             return false;
         }
     }
@@ -68,28 +128,11 @@ public class DatabaseManager {
 
         // 接続テスト
         try (Connection connection = dataSource.getConnection()) {
-            plugin.getLogger().info("Database connection established successfully!");
+            logger.info("Database connection established successfully!");
         }
     }
 
     private void createTables() throws SQLException {
-        String createMessagesTable = """
-            CREATE TABLE IF NOT EXISTS chat_messages (
-                id BIGINT AUTO_INCREMENT PRIMARY KEY,
-                message_id VARCHAR(36) NOT NULL UNIQUE,
-                server_name VARCHAR(64) NOT NULL,
-                player_name VARCHAR(16) NOT NULL,
-                player_uuid VARCHAR(36) NOT NULL,
-                channel_name VARCHAR(32) NOT NULL,
-                message TEXT NOT NULL,
-                timestamp BIGINT NOT NULL,
-                processed BOOLEAN DEFAULT FALSE,
-                INDEX idx_timestamp (timestamp),
-                INDEX idx_server_processed (server_name, processed),
-                INDEX idx_message_id (message_id)
-            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-            """;
-
         String createSyncStatusTable = """
             CREATE TABLE IF NOT EXISTS sync_status (
                 server_name VARCHAR(64) NOT NULL,
@@ -99,112 +142,458 @@ public class DatabaseManager {
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
             """;
 
+        // chat_messages と参照テーブルの作成・移行
+        if (configManager.isPartitioningEnabled()) {
+            partitionManager = new PartitionManager(configManager.getPartitionPremakeDays());
+        }
+        new SchemaMigrator(this, partitionManager).migrate();
+
         try (Connection connection = getConnection()) {
             try (Statement statement = connection.createStatement()) {
-                statement.executeUpdate(createMessagesTable);
                 statement.executeUpdate(createSyncStatusTable);
-                plugin.getLogger().info("Database tables created/verified successfully!");
+                logger.info("Database tables created/verified successfully!");
+            }
+        }
+    }
+
+    // JDBC処理は専用Executorで実行し、受け付けられなかった場合・遮断中は失敗したFutureを返す
+    // 結果はサーキットブレーカーに記録し、SQLException は CompletionException として返す
+    private <T> CompletableFuture<T> supplyAsync(SqlCall<T> call) {
+        if (!isAvailable()) {
+            circuitBreaker.recordRejected();
+            return CompletableFuture.failedFuture(circuitOpen());
+        }
+
+        return submit(() -> {
+            try {
+                T result = call.call();
+                circuitBreaker.recordSuccess();
+                return result;
+            } catch (SQLException e) {
+                recordFailure(e);
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+        return executor.supply(supplier);
+    }
+
+    CompletableFuture<Void> runAsync(Runnable runnable) {
+        if (!isAvailable()) {
+            circuitBreaker.recordRejected();
+            return CompletableFuture.failedFuture(circuitOpen());
+        }
+
+        return executor.supply(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    // データベースを使ってよいか。遮断中で open-duration を過ぎていれば、接続確認を1件だけ開始する
+    public boolean isAvailable() {
+        if (circuitBreaker.allowRequest()) {
+            return true;
+        }
+        if (circuitBreaker.tryHalfOpen()) {
+            probe();
+        }
+        return false;
+    }
+
+    // HALF_OPEN 状態での接続確認。成功すれば遮断を解除する
+    private void probe() {
+        if (!probeInFlight.compareAndSet(false, true)) {
+            return;
+        }
+
+        testConnection().whenComplete((valid, throwable) -> {
+            probeInFlight.set(false);
+            if (throwable == null && valid) {
+                circuitBreaker.recordProbeSuccess();
+                logger.info("Database connection recovered, resuming database operations");
+            } else {
+                circuitBreaker.recordProbeFailure();
+            }
+        });
+    }
+
+    // 遮断の判定には接続・タイムアウト等の一時的な障害だけを数える
+    // 不正な値などで特定の行が拒否された場合はデータベース自体は応答しているため数えない
+    private void recordFailure(SQLException e) {
+        if (!isTransient(e)) {
+            return;
+        }
+        long opened = circuitBreaker.getOpenCount();
+        circuitBreaker.recordFailure();
+        if (circuitBreaker.getOpenCount() != opened) {
+            logger.log(Level.SEVERE, "Database unavailable after " + circuitBreaker.getConsecutiveFailures() +
+                    " consecutive failures, pausing database operations (outgoing chat is spooled to disk)", e);
+        }
+    }
+
+    // 再試行すれば成功し得る障害か（接続断・タイムアウト・デッドロック等）
+    // バッチINSERTの失敗は BatchUpdateException に包まれるため、原因もたどる
+    public static boolean isTransient(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (cause instanceof SQLException sqlException) {
+                String state = sqlException.getSQLState();
+                // 08: 接続の異常 / 40: トランザクションのロールバック（デッドロック等）
+                if (state != null && (state.startsWith("08") || state.startsWith("40"))) {
+                    return true;
+                }
             }
         }
+        return false;
+    }
+
+    private static SQLException circuitOpen() {
+        return new SQLTransientConnectionException("Database circuit breaker is open");
     }
 
     public Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        long start = System.nanoTime();
+        Connection connection = dataSource.getConnection();
+        metrics.getPoolWait().recordNanosAsMicros(start);
+        return connection;
     }
 
-    public CompletableFuture<Void> saveChatMessage(ChatMessage message) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = """
-                INSERT INTO chat_messages 
-                (message_id, server_name, player_name, player_uuid, channel_name, message, timestamp) 
-                VALUES (?, ?, ?, ?, ?, ?, ?)
-                """;
+    // 書き込みキューに追加（実際のINSERTは書き込みスレッドでまとめて行う）
+    public boolean saveChatMessage(ChatMessage message) {
+        return writer != null && writer.enqueue(message);
+    }
 
-            try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql)) {
+    // 複数行をバッチINSERT（rewriteBatchedStatementsにより1回の複数行INSERTになる）
+    // 書き込みスレッドから同期的に呼ばれる。結果はサーキットブレーカーに記録する
+    void insertMessages(List<ChatMessage> messages) throws SQLException {
+        String sql = """
+            INSERT INTO chat_messages
+            (message_id, server_id, channel_id, player_uuid, player_name, message, message_compressed, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = id
+            """;
 
-                statement.setString(1, message.getMessageId());
-                statement.setString(2, message.getServerName());
-                statement.setString(3, message.getPlayerName());
-                statement.setString(4, message.getPlayerUuid());
-                statement.setString(5, message.getChannelName());
-                statement.setString(6, message.getMessage());
-                statement.setLong(7, message.getTimestamp());
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+
+            for (ChatMessage message : messages) {
+                statement.setBytes(1, UuidBytes.toBytes(message.getMessageId()));
+                statement.setInt(2, servers.idFor(connection, message.getServerName()));
+                statement.setInt(3, channels.idFor(connection, message.getChannelName()));
+                statement.setBytes(4, UuidBytes.toBytes(message.getPlayerUuid()));
+                statement.setString(5, message.getPlayerName());
+                // 閾値以上の本文は圧縮した方だけを保存する
+                byte[] compressed = messageCodec != null ? messageCodec.encode(message.getMessage()) : null;
+                if (compressed != null) {
+                    statement.setString(6, "");
+                    statement.setBytes(7, compressed);
+                } else {
+                    statement.setString(6, message.getMessage());
+                    statement.setNull(7, Types.BLOB);
+                }
+                statement.setLong(8, message.getTimestamp());
+                statement.addBatch();
+            }
 
-                statement.executeUpdate();
+            statement.executeBatch();
+            circuitBreaker.recordSuccess();
+        } catch (SQLException e) {
+            recordFailure(e);
+            throw e;
+        }
+    }
 
-                if (configManager.isDebugEnabled()) {
-                    plugin.getLogger().info("Saved chat message: " + message.getMessageId());
+    // サーバーごとの既読位置（sync_status.last_message_id）を取得
+    // 記録がない場合は現在の最新IDから開始し、過去ログを再送しない
+    // minTimestamp より前のメッセージは読み飛ばす（0の場合は全て）
+    public CompletableFuture<Long> getSyncCursor(String serverName, long minTimestamp) {
+        return supplyAsync(() -> {
+            String selectCursor = "SELECT last_message_id FROM sync_status WHERE server_name = ?";
+            String selectLatest = "SELECT COALESCE(MAX(id), 0) FROM chat_messages";
+            // idx_timestamp で下限の時刻以降の最初の行を探す
+            String selectFirstRecent = "SELECT id FROM chat_messages WHERE timestamp >= ? ORDER BY timestamp ASC LIMIT 1";
+
+            try (Connection connection = getConnection()) {
+                try (PreparedStatement statement = connection.prepareStatement(selectCursor)) {
+                    statement.setString(1, serverName);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        if (resultSet.next()) {
+                            long cursor = resultSet.getLong(1);
+                            if (minTimestamp <= 0) {
+                                return cursor;
+                            }
+
+                            try (PreparedStatement recent = connection.prepareStatement(selectFirstRecent)) {
+                                recent.setLong(1, minTimestamp);
+                                try (ResultSet recentResult = recent.executeQuery()) {
+                                    if (recentResult.next()) {
+                                        return Math.max(cursor, recentResult.getLong(1) - 1);
+                                    }
+                                }
+                            }
+                            // 下限以降のメッセージが無い場合は最新まで読み飛ばす
+                        }
+                    }
                 }
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to save chat message", e);
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery(selectLatest)) {
+                    return resultSet.next() ? resultSet.getLong(1) : 0L;
+                }
             }
         });
     }
 
-    public CompletableFuture<List<ChatMessage>> getUnprocessedMessages(String serverName) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<ChatMessage> messages = new ArrayList<>();
-            String sql = """
-                SELECT message_id, server_name, player_name, player_uuid, channel_name, message, timestamp
-                FROM chat_messages 
-                WHERE server_name != ? AND processed = FALSE
-                ORDER BY timestamp ASC
-                """;
+    // 既読位置より新しい他サーバーのメッセージを最大 limit 件取得（主キーの範囲スキャン）
+    // 続きは最後の行のIDを起点に再度呼び出す
+    public CompletableFuture<List<ChatMessage>> getMessagesAfter(String serverName, long lastMessageId, int limit) {
+        return getMessagesAfter(serverName, lastMessageId, lastMessageId, Set.of(), limit, ChannelRoute.ALL)
+                .thenApply(MessagePage::getMessages);
+    }
 
-            try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql)) {
+    // route のチャンネルに絞って取得する。INCLUDE の場合は idx_channel (channel_id, id) を使う
+    // id は INSERT 時に割り当てられ、行はコミット時に見えるようになるため、取得済みの最大IDより小さい行が後から現れる
+    // (settledId, fetchedId] はIDだけを読み直し、seenIds に無い行（後からコミットされた行）を取得する
+    // fetchedId より後は最大 limit 件を取得する
+    public CompletableFuture<MessagePage> getMessagesAfter(String serverName, long settledId, long fetchedId,
+                                                           Set<Long> seenIds, int limit, ChannelRoute route) {
+        return supplyAsync(() -> {
+            List<ChatMessage> late = new ArrayList<>();
+            List<ChatMessage> messages = new ArrayList<>(Math.min(limit, 1024));
+            long from = Math.max(settledId, fetchedId);
 
-                statement.setString(1, serverName);
+            try (Connection connection = getConnection()) {
+                // 取得時点で見えている最大ID（ページが埋まらなければ、ここまでの行は全て判定済み）
+                long upper;
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM chat_messages")) {
+                    upper = resultSet.next() ? resultSet.getLong(1) : 0L;
+                }
+                if (route.isEmpty() || upper <= settledId) {
+                    return new MessagePage(late, messages, from, upper);
+                }
 
-                try (ResultSet resultSet = statement.executeQuery()) {
-                    while (resultSet.next()) {
-                        ChatMessage message = new ChatMessage(
-                                resultSet.getString("message_id"),
-                                resultSet.getString("server_name"),
-                                resultSet.getString("player_name"),
-                                resultSet.getString("player_uuid"),
-                                resultSet.getString("channel_name"),
-                                resultSet.getString("message"),
-                                resultSet.getLong("timestamp")
-                        );
-                        messages.add(message);
+                int serverId = servers.findId(connection, serverName);
+                long minTimestamp = partitionManager != null ? pruneBound(connection, settledId) : 0L;
+                String filter = " AND server_id != ?" + route.getCondition() +
+                        (partitionManager != null ? " AND timestamp >= ?" : "");
+
+                if (fetchedId > settledId) {
+                    List<Long> missing = new ArrayList<>();
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            "SELECT id FROM chat_messages WHERE id > ? AND id <= ?" + filter)) {
+                        int index = 1;
+                        statement.setLong(index++, settledId);
+                        statement.setLong(index++, fetchedId);
+                        bindFilter(statement, index, serverId, route, minTimestamp);
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            while (resultSet.next()) {
+                                long id = resultSet.getLong(1);
+                                if (!seenIds.contains(id)) {
+                                    missing.add(id);
+                                }
+                            }
+                        }
+                    }
+                    if (!missing.isEmpty()) {
+                        late.addAll(selectByIds(connection, missing));
                     }
                 }
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to get unprocessed messages", e);
+                String sql = """
+                    SELECT id, message_id, server_id, channel_id, player_uuid, player_name, message, message_compressed, timestamp
+                    FROM chat_messages
+                    WHERE id > ?
+                    """ + filter + """
+                    ORDER BY id ASC
+                    LIMIT ?
+                    """;
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int index = bindFilter(statement, 2, serverId, route, minTimestamp);
+                    statement.setLong(1, from);
+                    statement.setInt(index, limit);
+                    statement.setFetchSize(limit);
+
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            messages.add(readMessage(connection, resultSet));
+                        }
+                    }
+                }
+
+                long lastId = messages.isEmpty() ? from : messages.get(messages.size() - 1).getId();
+                return new MessagePage(late, messages, lastId, upper);
             }
+        });
+    }
 
-            return messages;
+    // 取得条件（自サーバー以外・受信範囲・パーティションの下限）の値を設定し、次の位置を返す
+    private int bindFilter(PreparedStatement statement, int index, int serverId, ChannelRoute route,
+                           long minTimestamp) throws SQLException {
+        statement.setInt(index++, serverId);
+        index = route.bind(statement, index);
+        if (partitionManager != null) {
+            statement.setLong(index++, minTimestamp);
+        }
+        return index;
+    }
+
+    // パーティションを絞り込む timestamp の下限（受信漏れを防ぐため、現在時刻ではなく既読位置の行を基準にする）
+    // 既読位置以前で最も新しい行の timestamp から hot-window-hours を引いた値
+    // timestamp は送信元で付けるため、時計のずれや遅れて書き込まれた行（スプール）の分だけ余裕を持たせる
+    private long pruneBound(Connection connection, long settledId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT timestamp FROM chat_messages WHERE id <= ? ORDER BY id DESC LIMIT 1")) {
+            statement.setLong(1, settledId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return 0L;
+                }
+                return Math.max(resultSet.getLong(1) - configManager.getPartitionHotWindowHours() * 60L * 60L * 1000L, 0L);
+            }
+        }
+    }
+
+    private List<ChatMessage> selectByIds(Connection connection, List<Long> ids) throws SQLException {
+        List<ChatMessage> messages = new ArrayList<>(ids.size());
+        String sql = """
+            SELECT id, message_id, server_id, channel_id, player_uuid, player_name, message, message_compressed, timestamp
+            FROM chat_messages
+            WHERE id IN (""" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ") ORDER BY id ASC";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setLong(i + 1, ids.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    messages.add(readMessage(connection, resultSet));
+                }
+            }
+        }
+        return messages;
+    }
+
+    // 設定上の受信範囲を sync_channels のIDに解決する
+    // sync-channels を指定している場合はそのチャンネルを登録してIDを取得し、
+    // それ以外は既知のチャンネルのうち受信しないもの（除外リスト・管理者チャンネル）を除外する
+    public CompletableFuture<ChannelRoute> resolveRoute(ConfigSnapshot config) {
+        return supplyAsync(() -> {
+            try (Connection connection = getConnection()) {
+                ChannelSubscription subscription = config.getSubscription();
+                if (subscription.getMode() == ChannelSubscription.Mode.INCLUDE) {
+                    Set<String> names = subscription.getChannelNames();
+                    int[] ids = new int[names.size()];
+                    int i = 0;
+                    for (String name : names) {
+                        ids[i++] = channels.idFor(connection, name);
+                    }
+                    return new ChannelRoute(ChannelSubscription.Mode.INCLUDE, ids, names);
+                }
+
+                List<Integer> excludedIds = new ArrayList<>();
+                Set<String> excludedNames = new HashSet<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("SELECT id, name FROM sync_channels")) {
+                    while (resultSet.next()) {
+                        String name = resultSet.getString(2);
+                        if (!config.shouldSyncChannel(name)) {
+                            excludedIds.add(resultSet.getInt(1));
+                            excludedNames.add(name);
+                        }
+                    }
+                }
+                if (excludedIds.isEmpty()) {
+                    return new ChannelRoute(ChannelSubscription.Mode.ALL, new int[0], Set.of());
+                }
+                return new ChannelRoute(ChannelSubscription.Mode.EXCLUDE,
+                        excludedIds.stream().mapToInt(Integer::intValue).toArray(), Set.copyOf(excludedNames));
+            }
         });
     }
 
-    public CompletableFuture<Void> markMessageAsProcessed(String messageId) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = "UPDATE chat_messages SET processed = TRUE WHERE message_id = ?";
+    // チャンネルの直近 limit 件を古い順に取得（履歴キャッシュに無い分の読み込み用）
+    public CompletableFuture<List<ChatMessage>> getRecentMessages(String channelName, int limit) {
+        return supplyAsync(() -> {
+            List<ChatMessage> messages = new ArrayList<>(Math.min(limit, 1024));
+            String sql = """
+                SELECT id, message_id, server_id, channel_id, player_uuid, player_name, message, message_compressed, timestamp
+                FROM chat_messages
+                WHERE channel_id = ?
+                """ + (partitionManager != null ? " AND timestamp >= ?" : "") + """
+                ORDER BY id DESC
+                LIMIT ?
+                """;
 
-            try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql)) {
+            try (Connection connection = getConnection()) {
+                int channelId = channels.findId(connection, channelName);
+                if (channelId < 0) {
+                    return messages;
+                }
 
-                statement.setString(1, messageId);
-                statement.executeUpdate();
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    statement.setInt(index++, channelId);
+                    if (partitionManager != null) {
+                        statement.setLong(index++, System.currentTimeMillis() - configManager.getPartitionHotWindowHours() * 60L * 60L * 1000L);
+                    }
+                    statement.setInt(index, limit);
 
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to mark message as processed", e);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            messages.add(readMessage(connection, resultSet));
+                        }
+                    }
+                }
             }
+
+            Collections.reverse(messages);
+            return messages;
         });
     }
 
-    public CompletableFuture<Void> updateSyncStatus(String serverName) {
-        return CompletableFuture.runAsync(() -> {
+    private ChatMessage readMessage(Connection connection, ResultSet resultSet) throws SQLException {
+        // 圧縮された本文は配信時まで展開しない
+        byte[] compressed = resultSet.getBytes("message_compressed");
+        if (compressed != null) {
+            return ChatMessage.compressed(
+                    resultSet.getLong("id"),
+                    UuidBytes.fromBytes(resultSet.getBytes("message_id")),
+                    servers.nameFor(connection, resultSet.getInt("server_id")),
+                    resultSet.getString("player_name"),
+                    UuidBytes.fromBytes(resultSet.getBytes("player_uuid")),
+                    channels.nameFor(connection, resultSet.getInt("channel_id")),
+                    compressed,
+                    resultSet.getLong("timestamp")
+            );
+        }
+
+        return new ChatMessage(
+                resultSet.getLong("id"),
+                UuidBytes.fromBytes(resultSet.getBytes("message_id")),
+                servers.nameFor(connection, resultSet.getInt("server_id")),
+                resultSet.getString("player_name"),
+                UuidBytes.fromBytes(resultSet.getBytes("player_uuid")),
+                channels.nameFor(connection, resultSet.getInt("channel_id")),
+                resultSet.getString("message"),
+                resultSet.getLong("timestamp")
+        );
+    }
+
+    // 配信済み位置をまとめて確定（後退はさせない）。1ポーリング周期につき1回の更新
+    // 成否を返し、失敗した場合は呼び出し側が次の周期で再試行する
+    public CompletableFuture<Boolean> acknowledgeMessages(String serverName, long lastMessageId) {
+        return supplyAsync(() -> {
             String sql = """
-                INSERT INTO sync_status (server_name, last_sync_time, last_message_id) 
-                VALUES (?, ?, (SELECT COALESCE(MAX(id), 0) FROM chat_messages))
-                ON DUPLICATE KEY UPDATE 
+                INSERT INTO sync_status (server_name, last_sync_time, last_message_id)
+                VALUES (?, ?, ?)
+                ON DUPLICATE KEY UPDATE
                 last_sync_time = VALUES(last_sync_time),
-                last_message_id = VALUES(last_message_id)
+                last_message_id = GREATEST(last_message_id, VALUES(last_message_id))
                 """;
 
             try (Connection connection = getConnection();
@@ -212,55 +601,95 @@ public class DatabaseManager {
 
                 statement.setString(1, serverName);
                 statement.setLong(2, System.currentTimeMillis());
+                statement.setLong(3, lastMessageId);
 
                 statement.executeUpdate();
-
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to update sync status", e);
+                return true;
             }
+        }).exceptionally(throwable -> {
+            logger.log(Level.WARNING, "Failed to acknowledge messages up to id " + lastMessageId, throwable);
+            return false;
         });
     }
 
-    private void cleanupOldMessages() {
-        if (!configManager.isSaveToFile()) {
+    // 保存期間を過ぎたメッセージの定期削除を開始（パーティション分割時は先のパーティションの作成も行う）
+    private void startRetentionPurge() {
+        if (plugin == null || (!configManager.isSaveToFile() && partitionManager == null)) {
             return;
         }
 
-        CompletableFuture.runAsync(() -> {
-            long cutoffTime = System.currentTimeMillis() - (configManager.getRetentionDays() * 24 * 60 * 60 * 1000L);
-            String sql = "DELETE FROM chat_messages WHERE timestamp < ?";
-
-            try (Connection connection = getConnection();
-                 PreparedStatement statement = connection.prepareStatement(sql)) {
-
-                statement.setLong(1, cutoffTime);
-                int deleted = statement.executeUpdate();
-
-                if (deleted > 0) {
-                    plugin.getLogger().info("Cleaned up " + deleted + " old chat messages");
-                }
-
-            } catch (SQLException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to cleanup old messages", e);
-            }
-        });
+        retentionPurger = new RetentionPurger(plugin, this);
+        retentionPurger.start();
     }
 
+    // 遮断中でも実行する（HALF_OPEN 状態の接続確認に使う）
     public CompletableFuture<Boolean> testConnection() {
-        return CompletableFuture.supplyAsync(() -> {
+        return submit(() -> {
             try (Connection connection = getConnection()) {
                 return connection.isValid(5);
             } catch (SQLException e) {
-                plugin.getLogger().log(Level.WARNING, "Database connection test failed", e);
+                logger.log(Level.WARNING, "Database connection test failed", e);
                 return false;
             }
         });
     }
 
+    Logger getLogger() {
+        return logger;
+    }
+
+    ConfigManager getConfigManager() {
+        return configManager;
+    }
+
+    SyncMetrics getMetrics() {
+        return metrics;
+    }
+
+    File getDataFolder() {
+        return dataFolder;
+    }
+
+    public MessageCodec getMessageCodec() {
+        return messageCodec;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public ChatMessageWriter getWriter() {
+        return writer;
+    }
+
+    public DatabaseExecutor getExecutor() {
+        return executor;
+    }
+
+    public PartitionManager getPartitionManager() {
+        return partitionManager;
+    }
+
+    public RetentionPurger getRetentionPurger() {
+        return retentionPurger;
+    }
+
     public void close() {
+        if (retentionPurger != null) {
+            retentionPurger.stop();
+        }
+
+        if (writer != null) {
+            writer.shutdown();
+        }
+
+        if (executor != null) {
+            executor.shutdown(5000L);
+        }
+
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
-            plugin.getLogger().info("Database connection pool closed");
+            logger.info("Database connection pool closed");
         }
     }
 }
@@ -0,0 +1,91 @@
+package me.petoma21.lunaChatSync2.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// サーバー名・チャンネル名を小さな整数IDに正規化する参照テーブル（sync_servers / sync_channels）
+// 名前とIDの対応は変わらないため、一度引いた結果はメモリに保持する
+public class LookupTable {
+
+    private final String table;
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+    public LookupTable(String table) {
+        this.table = table;
+    }
+
+    // 未登録の名前は登録してからIDを返す
+    public int idFor(Connection connection, String name) throws SQLException {
+        Integer cached = idsByName.get(name);
+        if (cached != null) {
+            return cached;
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT IGNORE INTO " + table + " (name) VALUES (?)")) {
+            insert.setString(1, name);
+            insert.executeUpdate();
+        }
+
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id FROM " + table + " WHERE name = ?")) {
+            select.setString(1, name);
+            try (ResultSet resultSet = select.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLException("Failed to register " + name + " in " + table);
+                }
+                return remember(resultSet.getInt(1), name);
+            }
+        }
+    }
+
+    // 既存の名前のIDを返す（未登録の場合は-1）
+    public int findId(Connection connection, String name) throws SQLException {
+        Integer cached = idsByName.get(name);
+        if (cached != null) {
+            return cached;
+        }
+
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id FROM " + table + " WHERE name = ?")) {
+            select.setString(1, name);
+            try (ResultSet resultSet = select.executeQuery()) {
+                return resultSet.next() ? remember(resultSet.getInt(1), name) : -1;
+            }
+        }
+    }
+
+    public String nameFor(Connection connection, int id) throws SQLException {
+        String cached = namesById.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT name FROM " + table + " WHERE id = ?")) {
+            select.setInt(1, id);
+            try (ResultSet resultSet = select.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLException("Unknown id " + id + " in " + table);
+                }
+                remember(id, resultSet.getString(1));
+                return resultSet.getString(1);
+            }
+        }
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    private int remember(int id, String name) {
+        idsByName.put(name, id);
+        namesById.put(id, name);
+        return id;
+    }
+}
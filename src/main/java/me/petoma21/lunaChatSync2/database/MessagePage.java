@@ -0,0 +1,53 @@
+package me.petoma21.lunaChatSync2.database;
+
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// getMessagesAfter の1回分の結果
+public final class MessagePage {
+
+    // 取得済みの最大IDより小さく、前回までに見えていなかった行（後からコミットされた行）
+    private final List<ChatMessage> lateMessages;
+    // 取得済みの最大IDより後の行（最大 limit 件）
+    private final List<ChatMessage> messages;
+    private final long lastId;
+    private final long upper;
+
+    MessagePage(List<ChatMessage> lateMessages, List<ChatMessage> messages, long lastId, long upper) {
+        this.lateMessages = lateMessages;
+        this.messages = messages;
+        this.lastId = lastId;
+        this.upper = upper;
+    }
+
+    public List<ChatMessage> getLateMessages() {
+        return lateMessages;
+    }
+
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    // 配信する順（ID順）に両方を並べたもの
+    public List<ChatMessage> getAllMessages() {
+        if (lateMessages.isEmpty()) {
+            return messages;
+        }
+        List<ChatMessage> all = new ArrayList<>(lateMessages.size() + messages.size());
+        all.addAll(lateMessages);
+        all.addAll(messages);
+        return all;
+    }
+
+    // 返した行の最大ID（行が無い場合は起点のID）
+    public long getLastId() {
+        return lastId;
+    }
+
+    // 取得を始めた時点で見えていた最大ID
+    public long getUpper() {
+        return upper;
+    }
+}
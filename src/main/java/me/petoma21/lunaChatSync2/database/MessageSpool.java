@@ -0,0 +1,251 @@
+package me.petoma21.lunaChatSync2.database;
+
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// 書き込みキューから溢れたメッセージや、データベース障害中のメッセージを退避する追記専用ファイル
+// レコード形式: [長さ int][CRC32 int][本体]。末尾の壊れたレコードは読み捨てる
+// 読み出しは read() で先頭から取り出し、INSERT に成功してから commit() で消費済みにする
+// 読み出し位置（readPosition）はメモリ上にだけ持ち、ファイルには保存しない
+// 全て読み終えるまではファイルを切り詰めないため、途中で停止すると再起動後は先頭から、INSERT 済みのレコードも再送する
+// これが無害なのは INSERT が ON DUPLICATE KEY UPDATE で message_id の重複を無視するためで、
+// 再送経路で重複を弾かない書き込み方に変える場合は、読み出し位置を保存する必要がある
+public class MessageSpool {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private final File file;
+    private FileChannel channel;
+    private long readPosition;
+    private long uncommittedPosition;
+    private int uncommittedRecords;
+    private long pendingRecords;
+
+    public MessageSpool(File file) {
+        this.file = file;
+    }
+
+    public synchronized void open() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        readPosition = 0L;
+        uncommittedPosition = 0L;
+        uncommittedRecords = 0;
+        pendingRecords = recover();
+    }
+
+    // まとめて追記し、ディスクへの書き込みを待つ（データベース障害中の退避用）
+    public synchronized void appendAll(List<ChatMessage> messages) throws IOException {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer[] records = new ByteBuffer[messages.size()];
+        int size = 0;
+        for (int i = 0; i < records.length; i++) {
+            records[i] = record(messages.get(i));
+            size += records[i].remaining();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (ByteBuffer record : records) {
+            buffer.put(record);
+        }
+        buffer.flip();
+        write(buffer);
+        channel.force(false);
+        pendingRecords += messages.size();
+    }
+
+    private static ByteBuffer record(ChatMessage message) {
+        byte[] body = encode(message);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        buffer.putInt(body.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(body);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // 古い順に最大maxRecords件を読み出す。commit() するまでは次の read() でも同じレコードを返す
+    public synchronized List<ChatMessage> read(int maxRecords) throws IOException {
+        List<ChatMessage> messages = new ArrayList<>();
+        long size = channel.size();
+        long position = readPosition;
+        int records = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while (messages.size() < maxRecords && position + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+
+            if (length <= 0 || length > MAX_RECORD_SIZE || position + HEADER_SIZE + length > size) {
+                // 書き込み途中で停止した末尾レコード
+                position = size;
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(length);
+            channel.read(body, position + HEADER_SIZE);
+            position += HEADER_SIZE + length;
+            records++;
+
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != checksum) {
+                continue;
+            }
+            messages.add(decode(body.array()));
+        }
+
+        uncommittedPosition = position;
+        uncommittedRecords = records;
+        return messages;
+    }
+
+    // 直前の read() で返したレコードを消費済みにする。全て読み終えたらファイルを切り詰める
+    public synchronized void commit() throws IOException {
+        if (uncommittedPosition <= readPosition) {
+            return;
+        }
+
+        readPosition = uncommittedPosition;
+        pendingRecords = Math.max(0L, pendingRecords - uncommittedRecords);
+        uncommittedRecords = 0;
+        if (readPosition >= channel.size()) {
+            channel.truncate(0L);
+            channel.force(false);
+            readPosition = 0L;
+            uncommittedPosition = 0L;
+            pendingRecords = 0L;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingRecords == 0L;
+    }
+
+    public synchronized long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(true);
+            channel.close();
+        }
+    }
+
+    // 先頭から CRC の一致する完全なレコードを数え、最初の壊れたレコード以降を切り詰める
+    // 書き込み途中で停止した末尾を残すと、その後ろに追記したレコードを read() が読み飛ばしてしまう
+    private long recover() throws IOException {
+        long count = 0L;
+        long position = 0L;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || position + HEADER_SIZE + length > size) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(length);
+            channel.read(body, position + HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+            count++;
+        }
+
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(false);
+        }
+        return count;
+    }
+
+    private static byte[] encode(ChatMessage message) {
+        byte[][] fields = {
+                bytes(message.getMessageId()),
+                bytes(message.getServerName()),
+                bytes(message.getPlayerName()),
+                bytes(message.getPlayerUuid()),
+                bytes(message.getChannelName()),
+                bytes(message.getMessage())
+        };
+
+        int size = Long.BYTES;
+        for (byte[] field : fields) {
+            size += Integer.BYTES + field.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(message.getTimestamp());
+        for (byte[] field : fields) {
+            buffer.putInt(field.length);
+            buffer.put(field);
+        }
+        return buffer.array();
+    }
+
+    private static ChatMessage decode(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        long timestamp = buffer.getLong();
+        return new ChatMessage(
+                string(buffer),
+                string(buffer),
+                string(buffer),
+                string(buffer),
+                string(buffer),
+                string(buffer),
+                timestamp
+        );
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
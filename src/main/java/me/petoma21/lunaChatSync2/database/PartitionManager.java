@@ -0,0 +1,130 @@
+package me.petoma21.lunaChatSync2.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// chat_messages を timestamp の日単位で RANGE パーティション分割して管理する
+// パーティション名は pYYYYMMDD（UTC）、上限は翌日0時のミリ秒。末尾に MAXVALUE の pmax を置く
+// 保存期間の削除はパーティションのDROP（メタデータ操作）で行う
+public class PartitionManager {
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private final int premakeDays;
+
+    public PartitionManager(int premakeDays) {
+        this.premakeDays = Math.max(premakeDays, 1);
+    }
+
+    public boolean isPartitioned(Connection connection) throws SQLException {
+        String sql = """
+            SELECT COUNT(*) FROM INFORMATION_SCHEMA.PARTITIONS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND PARTITION_NAME IS NOT NULL
+            """;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() && resultSet.getInt(1) > 0;
+        }
+    }
+
+    // CREATE TABLE に付けるパーティション定義（firstDay から今日の premake-days 日先まで）
+    // 最初のパーティションには firstDay より前の行も全て入る
+    public String partitionClause(LocalDate firstDay) {
+        LocalDate last = LocalDate.now(ZoneOffset.UTC).plusDays(premakeDays);
+        List<String> definitions = new ArrayList<>();
+        for (LocalDate day = firstDay; !day.isAfter(last); day = day.plusDays(1)) {
+            definitions.add(definition(day));
+        }
+        definitions.add("PARTITION pmax VALUES LESS THAN MAXVALUE");
+        return "PARTITION BY RANGE (timestamp) (" + String.join(", ", definitions) + ")";
+    }
+
+    // 先の日付のパーティションを用意する。pmax は通常空のため分割は軽い
+    public int createFuturePartitions(Connection connection) throws SQLException {
+        LocalDate latest = null;
+        for (PartitionInfo partition : listPartitions(connection)) {
+            if (partition.day != null && (latest == null || partition.day.isAfter(latest))) {
+                latest = partition.day;
+            }
+        }
+
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate next = latest == null || latest.isBefore(today) ? today : latest.plusDays(1);
+        LocalDate last = today.plusDays(premakeDays);
+
+        List<String> definitions = new ArrayList<>();
+        for (LocalDate day = next; !day.isAfter(last); day = day.plusDays(1)) {
+            definitions.add(definition(day));
+        }
+        if (definitions.isEmpty()) {
+            return 0;
+        }
+
+        definitions.add("PARTITION pmax VALUES LESS THAN MAXVALUE");
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE chat_messages REORGANIZE PARTITION pmax INTO (" +
+                    String.join(", ", definitions) + ")");
+        }
+        return definitions.size() - 1;
+    }
+
+    // 上限が cutoffTime 以下のパーティション（全行が保存期間切れ）を削除し、削除した概算行数を返す
+    public long dropExpiredPartitions(Connection connection, long cutoffTime) throws SQLException {
+        List<String> expired = new ArrayList<>();
+        long rows = 0L;
+        for (PartitionInfo partition : listPartitions(connection)) {
+            if (partition.day != null && partition.upperBound <= cutoffTime) {
+                expired.add(partition.name);
+                rows += partition.rows;
+            }
+        }
+        if (expired.isEmpty()) {
+            return 0L;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE chat_messages DROP PARTITION " + String.join(", ", expired));
+        }
+        return rows;
+    }
+
+    private List<PartitionInfo> listPartitions(Connection connection) throws SQLException {
+        String sql = """
+            SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS FROM INFORMATION_SCHEMA.PARTITIONS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND PARTITION_NAME IS NOT NULL
+            ORDER BY PARTITION_ORDINAL_POSITION
+            """;
+        List<PartitionInfo> partitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                String name = resultSet.getString(1);
+                String description = resultSet.getString(2);
+                LocalDate day = null;
+                long upperBound = Long.MAX_VALUE;
+                if (!"MAXVALUE".equalsIgnoreCase(description)) {
+                    upperBound = Long.parseLong(description);
+                    day = LocalDate.parse(name, NAME_FORMAT);
+                }
+                partitions.add(new PartitionInfo(name, day, upperBound, resultSet.getLong(3)));
+            }
+        }
+        return partitions;
+    }
+
+    private static String definition(LocalDate day) {
+        long upperBound = day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        return "PARTITION " + day.format(NAME_FORMAT) + " VALUES LESS THAN (" + upperBound + ")";
+    }
+
+    private record PartitionInfo(String name, LocalDate day, long upperBound, long rows) {
+    }
+}
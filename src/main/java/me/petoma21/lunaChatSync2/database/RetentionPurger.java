@@ -0,0 +1,189 @@
+package me.petoma21.lunaChatSync2.database;
+
+import me.petoma21.lunaChatSync2.LunaChatSync2;
+import me.petoma21.lunaChatSync2.config.ConfigManager;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+// 保存期間を過ぎたメッセージを定期的に少しずつ削除する
+// 1回のDELETEは主キー順に chunk-size 件までに抑え、チャンク間で待機して他サーバーのINSERTを妨げない
+// パーティション分割時は期限切れのパーティションをDROPする
+// ネットワーク内で実行するのは GET_LOCK を取得できた1台のみ
+public class RetentionPurger {
+
+    private static final String PURGE_LOCK = "lunachatsync_purge";
+
+    private final LunaChatSync2 plugin;
+    private final ConfigManager configManager;
+    private final DatabaseManager databaseManager;
+    private final AtomicBoolean purging = new AtomicBoolean(false);
+    private BukkitTask task;
+
+    // 統計
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder skippedRuns = new LongAdder();
+    private final LongAdder totalDeleted = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private volatile long lastRunTime;
+    private volatile long lastRunDeleted;
+    private volatile long lastRunMillis;
+
+    public RetentionPurger(LunaChatSync2 plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.configManager = plugin.getConfigManager();
+        this.databaseManager = databaseManager;
+    }
+
+    public void start() {
+        long intervalTicks = Math.max(configManager.getPurgeIntervalMinutes(), 1L) * 60L * 20L;
+
+        // 起動直後は他の初期化を優先するため少し遅らせる
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::trigger, 20L * 30L, intervalTicks);
+    }
+
+    public void trigger() {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+
+        databaseManager.runAsync(this::purge)
+                .whenComplete((ignored, throwable) -> {
+                    purging.set(false);
+                    if (throwable != null) {
+                        plugin.getLogger().log(Level.SEVERE, "Failed to purge old messages", throwable);
+                    }
+                });
+    }
+
+    private void purge() {
+        long cutoffTime = System.currentTimeMillis() - (configManager.getRetentionDays() * 24 * 60 * 60 * 1000L);
+        int chunkSize = Math.max(configManager.getPurgeChunkSize(), 1);
+        long pauseMillis = Math.max(configManager.getPurgeChunkPause(), 0L);
+        long budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(configManager.getPurgeTimeBudget(), 1L));
+
+        try (Connection connection = databaseManager.getConnection()) {
+            if (!tryLock(connection)) {
+                skippedRuns.increment();
+                return;
+            }
+
+            long start = System.nanoTime();
+            long deleted = 0L;
+
+            // パーティション分割時は先の日付を用意し、期限切れのパーティションを丸ごと削除する
+            PartitionManager partitionManager = databaseManager.getPartitionManager();
+            if (partitionManager != null) {
+                try {
+                    partitionManager.createFuturePartitions(connection);
+                    if (configManager.isSaveToFile()) {
+                        deleted = partitionManager.dropExpiredPartitions(connection, cutoffTime);
+                    }
+                } finally {
+                    unlock(connection);
+                    recordRun(deleted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                return;
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM chat_messages WHERE timestamp < ? ORDER BY id LIMIT ?")) {
+
+                while (true) {
+                    statement.setLong(1, cutoffTime);
+                    statement.setInt(2, chunkSize);
+                    int rows = statement.executeUpdate();
+                    deleted += rows;
+
+                    if (rows < chunkSize || System.nanoTime() - start >= budgetNanos) {
+                        break;
+                    }
+                    if (pauseMillis > 0) {
+                        Thread.sleep(pauseMillis);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                unlock(connection);
+                recordRun(deleted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to cleanup old messages", e);
+        }
+    }
+
+    private void recordRun(long deleted, long millis) {
+        runs.increment();
+        totalDeleted.add(deleted);
+        totalMillis.add(millis);
+        lastRunTime = System.currentTimeMillis();
+        lastRunDeleted = deleted;
+        lastRunMillis = millis;
+
+        if (deleted > 0) {
+            plugin.getLogger().info("Cleaned up " + deleted + " old chat messages in " + millis + "ms");
+        }
+    }
+
+    private boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            statement.setString(1, PURGE_LOCK);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void unlock(Connection connection) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, PURGE_LOCK);
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to release purge lock", e);
+        }
+    }
+
+    public void stop() {
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+        }
+    }
+
+    public long getRunCount() {
+        return runs.sum();
+    }
+
+    public long getSkippedRunCount() {
+        return skippedRuns.sum();
+    }
+
+    public long getTotalDeleted() {
+        return totalDeleted.sum();
+    }
+
+    public long getTotalMillis() {
+        return totalMillis.sum();
+    }
+
+    public long getLastRunTime() {
+        return lastRunTime;
+    }
+
+    public long getLastRunDeleted() {
+        return lastRunDeleted;
+    }
+
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+}
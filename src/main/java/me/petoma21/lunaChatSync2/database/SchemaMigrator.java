@@ -0,0 +1,360 @@
+package me.petoma21.lunaChatSync2.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+// テーブル作成と既存テーブルの移行
+// v1: message_id/player_uuid が VARCHAR(36)、サーバー名・チャンネル名を行ごとに保持
+// v2: message_id/player_uuid を BINARY(16) にし、サーバー名・チャンネル名を参照テーブルのIDに正規化
+// v3: チャンネルを絞った取得用に idx_channel (channel_id, id) を追加
+// v4: 圧縮した本文用の message_compressed を追加（圧縮した行の message は空文字）
+// テーブルのコピー（v1 から v2 への移行・パーティション分割への変換）は起動処理の中で同期的に行い、終わるまで起動は完了しない
+// v1 から v2 への移行は列の構成が変わるため、入れ替え後は v1 のプラグインの書き込みが全て失敗する
+// オンラインでは移行できない。全サーバーを止めて更新してから起動すること（停止を伴う作業）
+public class SchemaMigrator {
+
+    public static final int CURRENT_VERSION = 4;
+
+    private static final String MIGRATION_LOCK = "lunachatsync_schema";
+    private static final int LOCK_TIMEOUT_SECONDS = 600;
+    // 入れ替え前の AUTO_INCREMENT の余裕。採番から入れ替えまでの間に旧テーブルへ追加される行数より十分大きくする
+    private static final long AUTO_INCREMENT_GAP = 100_000L;
+    // コピーの進捗を出力する間隔
+    private static final long PROGRESS_INTERVAL_MILLIS = 10_000L;
+
+    private static final String CREATE_SERVERS_TABLE = """
+        CREATE TABLE IF NOT EXISTS sync_servers (
+            id SMALLINT UNSIGNED AUTO_INCREMENT PRIMARY KEY,
+            name VARCHAR(64) NOT NULL,
+            UNIQUE KEY uk_name (name)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """;
+
+    private static final String CREATE_CHANNELS_TABLE = """
+        CREATE TABLE IF NOT EXISTS sync_channels (
+            id INT UNSIGNED AUTO_INCREMENT PRIMARY KEY,
+            name VARCHAR(32) NOT NULL,
+            UNIQUE KEY uk_name (name)
+        ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+        """;
+
+    private static final String MESSAGES_COLUMNS = """
+            id BIGINT NOT NULL AUTO_INCREMENT,
+            message_id BINARY(16) NOT NULL,
+            server_id SMALLINT UNSIGNED NOT NULL,
+            channel_id INT UNSIGNED NOT NULL,
+            player_uuid BINARY(16) NOT NULL,
+            player_name VARCHAR(16) NOT NULL,
+            message TEXT NOT NULL,
+            timestamp BIGINT NOT NULL,
+            message_compressed BLOB NULL,
+        """;
+
+    private static final String MESSAGES_KEYS = """
+            PRIMARY KEY (id),
+            UNIQUE KEY uk_message_id (message_id),
+            INDEX idx_timestamp (timestamp),
+            INDEX idx_channel (channel_id, id)
+        """;
+
+    // パーティション分割する場合は、全ての一意キーに分割キー（timestamp）を含める必要がある
+    // 同じメッセージは再送時も同じtimestampを持つため、(message_id, timestamp) で重複排除できる
+    private static final String PARTITIONED_MESSAGES_KEYS = """
+            PRIMARY KEY (id, timestamp),
+            UNIQUE KEY uk_message_id (message_id, timestamp),
+            INDEX idx_timestamp (timestamp),
+            INDEX idx_channel (channel_id, id)
+        """;
+
+    private final Logger logger;
+    private final DatabaseManager databaseManager;
+    // パーティション分割を使わない場合はnull
+    private final PartitionManager partitionManager;
+    private final int chunkSize;
+
+    public SchemaMigrator(DatabaseManager databaseManager, PartitionManager partitionManager) {
+        this.logger = databaseManager.getLogger();
+        this.databaseManager = databaseManager;
+        this.partitionManager = partitionManager;
+        this.chunkSize = Math.max(databaseManager.getConfigManager().getMigrationChunkSize(), 100);
+    }
+
+    public void migrate() throws SQLException {
+        try (Connection connection = databaseManager.getConnection()) {
+            // 複数サーバーが同時に起動しても移行は1台だけが行う
+            if (!acquireLock(connection)) {
+                throw new SQLException("Timed out waiting for schema migration lock");
+            }
+
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("""
+                        CREATE TABLE IF NOT EXISTS sync_schema (
+                            id TINYINT PRIMARY KEY,
+                            version INT NOT NULL
+                        ) ENGINE=InnoDB
+                        """);
+                    statement.executeUpdate(CREATE_SERVERS_TABLE);
+                    statement.executeUpdate(CREATE_CHANNELS_TABLE);
+                }
+
+                int version = detectVersion(connection);
+                if (version == 0) {
+                    createMessagesTable(connection, "chat_messages", LocalDate.now(ZoneOffset.UTC));
+                    version = CURRENT_VERSION;
+                }
+                if (version == 1) {
+                    migrateToBinaryIds(connection);
+                    version = 2;
+                }
+                if (version == 2) {
+                    addChannelIndex(connection);
+                    version = 3;
+                }
+                if (version == 3) {
+                    addCompressedColumn(connection);
+                    version = 4;
+                }
+                setVersion(connection, version);
+
+                if (partitionManager != null) {
+                    if (partitionManager.isPartitioned(connection)) {
+                        partitionManager.createFuturePartitions(connection);
+                    } else {
+                        convertToPartitioned(connection);
+                    }
+                }
+            } finally {
+                releaseLock(connection);
+            }
+        }
+    }
+
+    private int detectVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version FROM sync_schema WHERE id = 1")) {
+            if (resultSet.next()) {
+                return resultSet.getInt(1);
+            }
+        }
+
+        // バージョン管理導入前のテーブルは列の型で判定
+        String sql = """
+            SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND COLUMN_NAME = 'message_id'
+            """;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            if (!resultSet.next()) {
+                return 0;
+            }
+            return resultSet.getString(1).equalsIgnoreCase("binary") ? 2 : 1;
+        }
+    }
+
+    private void setVersion(Connection connection, int version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO sync_schema (id, version) VALUES (1, ?) ON DUPLICATE KEY UPDATE version = VALUES(version)")) {
+            statement.setInt(1, version);
+            statement.executeUpdate();
+        }
+    }
+
+    private void createMessagesTable(Connection connection, String table, LocalDate firstDay) throws SQLException {
+        String sql = "CREATE TABLE IF NOT EXISTS " + table + " (" + MESSAGES_COLUMNS +
+                (partitionManager != null ? PARTITIONED_MESSAGES_KEYS : MESSAGES_KEYS) +
+                ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci";
+        if (partitionManager != null) {
+            sql += " " + partitionManager.partitionClause(firstDay);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    // 新しい形式のテーブルへ主キー順に少しずつコピーし、最後にRENAMEで入れ替える
+    // idを保持するため、sync_status.last_message_id はそのまま使える
+    // 入れ替え後、v1 のままのサーバーは存在しない列（server_name 等）へ書き込もうとして失敗し続ける
+    private void migrateToBinaryIds(Connection connection) throws SQLException {
+        logger.info("Migrating chat_messages to compact schema (v2)...");
+        copyAndSwap(connection, "chat_messages_v2", "chat_messages_v1", true);
+        logger.info("chat_messages migrated. The old table was kept as chat_messages_v1 and can be dropped manually.");
+    }
+
+    // v1 から移行した場合は新しいテーブルの作成時に索引が付いている
+    private void addChannelIndex(Connection connection) throws SQLException {
+        String sql = """
+            SELECT 1 FROM INFORMATION_SCHEMA.STATISTICS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND INDEX_NAME = 'idx_channel'
+            LIMIT 1
+            """;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            if (resultSet.next()) {
+                return;
+            }
+        }
+
+        // 索引の追加はオンラインで行い、作成中もチャットの書き込みを止めない
+        logger.info("Adding channel index to chat_messages (v3)...");
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE chat_messages ADD INDEX idx_channel (channel_id, id), ALGORITHM=INPLACE, LOCK=NONE");
+        }
+        logger.info("Channel index added.");
+    }
+
+    // 末尾への列の追加。MySQL 8.0 ではテーブルを作り直さない INSTANT で行われる
+    // パーティション分割時のコピー（SELECT *）のため、新規作成時と同じく最後の列にする
+    private void addCompressedColumn(Connection connection) throws SQLException {
+        String sql = """
+            SELECT 1 FROM INFORMATION_SCHEMA.COLUMNS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND COLUMN_NAME = 'message_compressed'
+            """;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            if (resultSet.next()) {
+                return;
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE chat_messages ADD COLUMN message_compressed BLOB NULL");
+        }
+        logger.info("Added message_compressed column to chat_messages (v4).");
+    }
+
+    private void convertToPartitioned(Connection connection) throws SQLException {
+        logger.info("Converting chat_messages to a partitioned table...");
+        copyAndSwap(connection, "chat_messages_partitioned", "chat_messages_unpartitioned", false);
+        logger.info("chat_messages partitioned. The old table was kept as chat_messages_unpartitioned and can be dropped manually.");
+    }
+
+    private void copyAndSwap(Connection connection, String newTable, String retiredTable, boolean fromLegacy) throws SQLException {
+        // 既存データの最古の日からパーティションを作る
+        createMessagesTable(connection, newTable, oldestDay(connection));
+
+        long copied = copyRange(connection, "chat_messages", newTable, maxId(connection, newTable), fromLegacy);
+
+        // 入れ替え後に補完する行（旧テーブルの copied より後）と、入れ替え後の新しい行のIDが重ならないように、
+        // 新しいテーブルの採番を旧テーブルの最大IDより先へ進めておく（重なると INSERT IGNORE で補完する行が失われる）
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE " + newTable + " AUTO_INCREMENT = " +
+                    (maxId(connection, "chat_messages") + AUTO_INCREMENT_GAP));
+        }
+
+        // 入れ替え。コピー中に旧テーブルへ追加された行はこの後で補完する
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("RENAME TABLE chat_messages TO " + retiredTable + ", " + newTable + " TO chat_messages");
+        }
+        copyRange(connection, retiredTable, "chat_messages", copied, fromLegacy);
+    }
+
+    private LocalDate oldestDay(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MIN(timestamp) FROM chat_messages")) {
+            if (resultSet.next() && resultSet.getObject(1) != null) {
+                return Instant.ofEpochMilli(resultSet.getLong(1)).atZone(ZoneOffset.UTC).toLocalDate();
+            }
+        }
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    // fromId（前回中断した位置を含む）より後の行をコピーし、コピー済みの最大IDを返す
+    private long copyRange(Connection connection, String source, String target, long fromId, boolean fromLegacy) throws SQLException {
+        List<String> statements = new ArrayList<>();
+        if (fromLegacy) {
+            statements.add("INSERT IGNORE INTO sync_servers (name) SELECT DISTINCT server_name FROM " + source +
+                    " WHERE id > ? AND id <= ?");
+            statements.add("INSERT IGNORE INTO sync_channels (name) SELECT DISTINCT channel_name FROM " + source +
+                    " WHERE id > ? AND id <= ?");
+            statements.add("""
+                INSERT IGNORE INTO %s (id, message_id, server_id, channel_id, player_uuid, player_name, message, timestamp)
+                SELECT m.id, UNHEX(REPLACE(m.message_id, '-', '')), s.id, c.id,
+                       UNHEX(REPLACE(m.player_uuid, '-', '')), m.player_name, m.message, m.timestamp
+                FROM %s m
+                JOIN sync_servers s ON s.name = m.server_name
+                JOIN sync_channels c ON c.name = m.channel_name
+                WHERE m.id > ? AND m.id <= ?
+                """.formatted(target, source));
+        } else {
+            statements.add("INSERT IGNORE INTO " + target + " SELECT * FROM " + source + " WHERE id > ? AND id <= ?");
+        }
+
+        long position = fromId;
+        long total = 0L;
+        long maxId = maxId(connection, source);
+        long started = System.currentTimeMillis();
+        long lastProgress = started;
+        if (position < maxId) {
+            logger.info("Copying chat messages from " + source + " to " + target + " (id " + position + " to " + maxId +
+                    "). Server startup waits until the copy finishes.");
+        }
+
+        // コピー中にも行が増えるため、最大IDに追いつくまで繰り返す
+        while (position < maxId) {
+            long upper = Math.min(position + chunkSize, maxId);
+
+            int rows = 0;
+            for (String sql : statements) {
+                rows = executeRange(connection, sql, position, upper);
+            }
+            total += rows;
+            position = upper;
+
+            long now = System.currentTimeMillis();
+            if (now - lastProgress >= PROGRESS_INTERVAL_MILLIS) {
+                lastProgress = now;
+                long elapsedSeconds = Math.max((now - started) / 1000L, 1L);
+                logger.info(String.format("Copied %d chat messages (id %d/%d, %.1f%%, %d rows/s, %ds elapsed)",
+                        total, position, maxId, position * 100.0 / maxId, total / elapsedSeconds, elapsedSeconds));
+            }
+            maxId = maxId(connection, source);
+        }
+        if (total > 0) {
+            logger.info("Copied " + total + " chat messages in " + (System.currentTimeMillis() - started) / 1000L + "s");
+        }
+        return position;
+    }
+
+    private int executeRange(Connection connection, String sql, long lower, long upper) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, lower);
+            statement.setLong(2, upper);
+            return statement.executeUpdate();
+        }
+    }
+
+    private long maxId(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0L;
+        }
+    }
+
+    private boolean acquireLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, MIGRATION_LOCK);
+            statement.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void releaseLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, MIGRATION_LOCK);
+            statement.executeQuery().close();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package me.petoma21.lunaChatSync2.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+// 無視ワード判定用の Aho-Corasick オートマトン
+// 全ワードを1つのトライにまとめるため、判定はワード数に関係なくメッセージ長に比例する
+// 大文字小文字は1文字ずつ畳み込んで比較するので、判定時に文字列を生成しない
+public final class WordMatcher {
+
+    private static final WordMatcher EMPTY = new WordMatcher();
+
+    private final boolean ignoreSeparators;
+    private final boolean leetspeak;
+    private final int patternCount;
+
+    // 遷移表 (状態, 文字) -> 次の状態。オープンアドレス法のハッシュ表
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int edgeMask;
+
+    private final int[] failure;
+    // この状態（または失敗遷移の先）でいずれかのワードが終わるか
+    private final boolean[] terminal;
+
+    private WordMatcher() {
+        this.ignoreSeparators = false;
+        this.leetspeak = false;
+        this.patternCount = 0;
+        this.edgeKeys = new long[0];
+        this.edgeTargets = new int[0];
+        this.edgeMask = -1;
+        this.failure = new int[1];
+        this.terminal = new boolean[1];
+    }
+
+    private WordMatcher(Collection<String> words, boolean ignoreSeparators, boolean leetspeak) {
+        this.ignoreSeparators = ignoreSeparators;
+        this.leetspeak = leetspeak;
+
+        // トライの構築（子は状態ごとのリストで保持）
+        List<int[]> children = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        children.add(new int[0]);
+        ends.add(false);
+        int patterns = 0;
+
+        for (String word : words) {
+            int state = 0;
+            int length = 0;
+            for (int i = 0; i < word.length(); i++) {
+                int c = normalize(word.charAt(i));
+                if (c < 0) {
+                    continue;
+                }
+                int next = findChild(children.get(state), c);
+                if (next < 0) {
+                    next = children.size();
+                    children.add(new int[0]);
+                    ends.add(false);
+                    children.set(state, appendChild(children.get(state), c, next));
+                }
+                state = next;
+                length++;
+            }
+            if (length > 0) {
+                ends.set(state, true);
+                patterns++;
+            }
+        }
+        this.patternCount = patterns;
+
+        int states = children.size();
+        int edges = states - 1;
+        int tableSize = Integer.highestOneBit(Math.max(edges * 2, 2) - 1) << 1;
+        this.edgeKeys = new long[tableSize];
+        this.edgeTargets = new int[tableSize];
+        this.edgeMask = tableSize - 1;
+        Arrays.fill(edgeKeys, -1L);
+
+        for (int state = 0; state < states; state++) {
+            int[] list = children.get(state);
+            for (int i = 0; i < list.length; i += 2) {
+                putEdge(state, list[i], list[i + 1]);
+            }
+        }
+
+        // 失敗遷移を幅優先で計算
+        this.failure = new int[states];
+        this.terminal = new boolean[states];
+        for (int state = 0; state < states; state++) {
+            terminal[state] = ends.get(state);
+        }
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int[] rootChildren = children.get(0);
+        for (int i = 0; i < rootChildren.length; i += 2) {
+            queue.add(rootChildren[i + 1]);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] list = children.get(state);
+            for (int i = 0; i < list.length; i += 2) {
+                int c = list[i];
+                int child = list[i + 1];
+
+                int fallback = failure[state];
+                int target;
+                while ((target = edge(fallback, c)) < 0 && fallback != 0) {
+                    fallback = failure[fallback];
+                }
+                failure[child] = target >= 0 && target != child ? target : 0;
+                terminal[child] |= terminal[failure[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public static WordMatcher compile(Collection<String> words, boolean ignoreSeparators, boolean leetspeak) {
+        WordMatcher matcher = new WordMatcher(words, ignoreSeparators, leetspeak);
+        return matcher.patternCount == 0 ? EMPTY : matcher;
+    }
+
+    public static WordMatcher empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return patternCount == 0;
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    // いずれかのワードを含むか
+    public boolean matches(CharSequence text) {
+        if (patternCount == 0) {
+            return false;
+        }
+
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            int c = normalize(text.charAt(i));
+            if (c < 0) {
+                continue;
+            }
+
+            int next;
+            while ((next = edge(state, c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = next < 0 ? 0 : next;
+
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 比較用の文字に変換する。区切り文字を無視する場合、区切り文字は-1
+    private int normalize(char c) {
+        char folded = Character.toLowerCase(c);
+        if (leetspeak) {
+            folded = switch (folded) {
+                case '0' -> 'o';
+                case '1', '!' -> 'i';
+                case '3' -> 'e';
+                case '4', '@' -> 'a';
+                case '5', '$' -> 's';
+                case '7' -> 't';
+                default -> folded;
+            };
+        }
+        if (ignoreSeparators && !Character.isLetterOrDigit(folded)) {
+            return -1;
+        }
+        return folded;
+    }
+
+    private int edge(int state, int c) {
+        if (edgeMask < 0) {
+            return -1;
+        }
+        long key = key(state, c);
+        int slot = slotOf(key);
+        while (true) {
+            long existing = edgeKeys[slot];
+            if (existing == key) {
+                return edgeTargets[slot];
+            }
+            if (existing == -1L) {
+                return -1;
+            }
+            slot = (slot + 1) & edgeMask;
+        }
+    }
+
+    private void putEdge(int state, int c, int target) {
+        long key = key(state, c);
+        int slot = slotOf(key);
+        while (edgeKeys[slot] != -1L) {
+            slot = (slot + 1) & edgeMask;
+        }
+        edgeKeys[slot] = key;
+        edgeTargets[slot] = target;
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & edgeMask;
+    }
+
+    private static long key(int state, int c) {
+        return ((long) state << 16) | c;
+    }
+
+    private static int findChild(int[] list, int c) {
+        for (int i = 0; i < list.length; i += 2) {
+            if (list[i] == c) {
+                return list[i + 1];
+            }
+        }
+        return -1;
+    }
+
+    private static int[] appendChild(int[] list, int c, int child) {
+        int[] grown = Arrays.copyOf(list, list.length + 2);
+        grown[list.length] = c;
+        grown[list.length + 1] = child;
+        return grown;
+    }
+}
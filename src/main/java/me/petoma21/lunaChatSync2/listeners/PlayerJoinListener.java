@@ -0,0 +1,68 @@
+package me.petoma21.lunaChatSync2.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.entity.Player;
+import com.github.ucchyocean.lc3.LunaChat;
+import com.github.ucchyocean.lc3.LunaChatAPI;
+import com.github.ucchyocean.lc3.channel.Channel;
+import me.petoma21.lunaChatSync2.LunaChatSync2;
+import me.petoma21.lunaChatSync2.config.ConfigManager;
+import me.petoma21.lunaChatSync2.config.ConfigSnapshot;
+import me.petoma21.lunaChatSync2.managers.ChatSyncManager;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// 参加したプレイヤーに、参加しているチャンネルの直近のチャットを表示する
+// 表示するのは履歴キャッシュにある分のみ（参加のたびにデータベースへ問い合わせない）
+public class PlayerJoinListener implements Listener {
+
+    private final LunaChatSync2 plugin;
+    private final ConfigManager configManager;
+
+    public PlayerJoinListener(LunaChatSync2 plugin) {
+        this.plugin = plugin;
+        this.configManager = plugin.getConfigManager();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        int lines = configManager.getHistoryJoinLines();
+        Player player = event.getPlayer();
+        if (lines <= 0 || !player.hasPermission("velocitychatsync.history")) {
+            return;
+        }
+
+        ConfigSnapshot config = configManager.getSnapshot();
+        Set<String> channelNames = new LinkedHashSet<>(configManager.getHistoryJoinChannels());
+        LunaChatAPI api = LunaChat.getAPI();
+        if (api != null) {
+            for (Channel channel : api.getChannelsByPlayer(player.getName())) {
+                channelNames.add(channel.getName());
+            }
+        }
+        channelNames.removeIf(channelName -> !config.shouldSyncChannel(channelName));
+        if (channelNames.isEmpty()) {
+            return;
+        }
+
+        ChatSyncManager chatSyncManager = plugin.getChatSyncManager();
+        // 起動直後で空のチャンネルは、次に参加するプレイヤーのために読み込んでおく
+        chatSyncManager.primeHistory(channelNames);
+
+        List<ChatMessage> recent = chatSyncManager.getHistoryCache().getRecent(channelNames, lines);
+        if (recent.isEmpty()) {
+            return;
+        }
+
+        player.sendMessage(configManager.getMessage("history-header", "&7--- Recent chat ---"));
+        for (ChatMessage message : recent) {
+            player.sendMessage(config.getDisplayTemplate().render(message));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package me.petoma21.lunaChatSync2.managers;
+
+import me.petoma21.lunaChatSync2.LunaChatSync2;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+public class BukkitSyncScheduler implements SyncScheduler {
+
+    private final LunaChatSync2 plugin;
+
+    public BukkitSyncScheduler(LunaChatSync2 plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public Task runLaterAsync(Runnable task, long delayMillis) {
+        // 1tick = 50ms。0以下でも次のtickまで待つ
+        long ticks = Math.max((delayMillis + 49) / 50, 1);
+        BukkitTask bukkitTask = Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, task, ticks);
+        return bukkitTask::cancel;
+    }
+
+    @Override
+    public Task runEveryTick(Runnable task) {
+        BukkitTask bukkitTask = Bukkit.getScheduler().runTaskTimer(plugin, task, 1L, 1L);
+        return bukkitTask::cancel;
+    }
+}
@@ -0,0 +1,14 @@
+package me.petoma21.lunaChatSync2.managers;
+
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+// 受信メッセージの表示先。サーバー上では LunaChat（LunaChatDelivery）、負荷試験では受信記録用の実装を使う
+public interface ChatDelivery {
+
+    // メインスレッドで呼ばれる。表示できた場合はtrue
+    boolean deliver(ChatMessage message, String displayMessage);
+
+    // 設定のリロード時に呼ばれる
+    default void reset() {
+    }
+}
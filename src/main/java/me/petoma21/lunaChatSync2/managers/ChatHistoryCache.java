@@ -0,0 +1,163 @@
+package me.petoma21.lunaChatSync2.managers;
+
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// チャンネルごとの直近のチャット（他サーバーから配信した分と、このサーバーの発言）
+// 参加時の表示や history コマンドはここから返し、データベースはバッファに無い分の取得にだけ使う
+// メモリ使用量は size × max-channels 件までに制限する
+public class ChatHistoryCache {
+
+    private final int size;
+    private final int maxChannels;
+    private final Map<String, ChannelHistory> channels = new ConcurrentHashMap<>();
+
+    // 固定長のリング。追加は配信スレッドと送信スレッドの両方から行われる
+    private static final class ChannelHistory {
+        private final ChatMessage[] messages;
+        private int next;
+        private int count;
+        // データベースから過去分を読み込み済みか（起動直後の空のバッファと区別する）
+        private volatile boolean primed;
+
+        ChannelHistory(int size) {
+            this.messages = new ChatMessage[size];
+        }
+
+        synchronized void add(ChatMessage message) {
+            messages[next] = message;
+            next = (next + 1) % messages.length;
+            if (count < messages.length) {
+                count++;
+            }
+        }
+
+        // 古い順に最大 limit 件
+        synchronized List<ChatMessage> recent(int limit) {
+            int n = Math.min(limit, count);
+            List<ChatMessage> result = new ArrayList<>(n);
+            int start = next - n;
+            for (int i = 0; i < n; i++) {
+                result.add(messages[Math.floorMod(start + i, messages.length)]);
+            }
+            return result;
+        }
+
+        synchronized int count() {
+            return count;
+        }
+    }
+
+    public ChatHistoryCache(int size, int maxChannels) {
+        this.size = Math.max(size, 1);
+        this.maxChannels = Math.max(maxChannels, 1);
+    }
+
+    public void add(ChatMessage message) {
+        ChannelHistory history = history(message.getChannelName());
+        if (history != null) {
+            history.add(message);
+        }
+    }
+
+    // 上限を超えるチャンネルは記録しない
+    private ChannelHistory history(String channelName) {
+        ChannelHistory history = channels.get(channelName);
+        if (history == null && channels.size() < maxChannels) {
+            history = channels.computeIfAbsent(channelName, ignored -> new ChannelHistory(size));
+        }
+        return history;
+    }
+
+    // 古い順に最大 limit 件
+    public List<ChatMessage> getRecent(String channelName, int limit) {
+        ChannelHistory history = channels.get(channelName);
+        return history == null ? List.of() : history.recent(limit);
+    }
+
+    // 複数チャンネルの直近 limit 件を時刻順に
+    public List<ChatMessage> getRecent(Collection<String> channelNames, int limit) {
+        List<ChatMessage> merged = new ArrayList<>();
+        for (String channelName : channelNames) {
+            merged.addAll(getRecent(channelName, limit));
+        }
+        merged.sort(Comparator.comparingLong(ChatMessage::getTimestamp));
+        return merged.size() > limit ? merged.subList(merged.size() - limit, merged.size()) : merged;
+    }
+
+    public int getCount(String channelName) {
+        ChannelHistory history = channels.get(channelName);
+        return history == null ? 0 : history.count();
+    }
+
+    public boolean isPrimed(String channelName) {
+        ChannelHistory history = channels.get(channelName);
+        return history != null && history.primed;
+    }
+
+    // データベースから読み込んだ過去分（古い順）を、起動後に受け取った分より前に入れる
+    public void prime(String channelName, List<ChatMessage> older) {
+        ChannelHistory history = history(channelName);
+        if (history == null) {
+            return;
+        }
+
+        synchronized (history) {
+            if (history.primed) {
+                return;
+            }
+            List<ChatMessage> current = history.recent(size);
+            Set<String> received = new HashSet<>();
+            for (ChatMessage message : current) {
+                received.add(message.getMessageId());
+            }
+
+            history.count = 0;
+            history.next = 0;
+            for (ChatMessage message : older) {
+                // 起動後に受け取った分と重なる行は二重に入れない
+                if (!received.contains(message.getMessageId())) {
+                    history.add(message);
+                }
+            }
+            for (ChatMessage message : current) {
+                history.add(message);
+            }
+            history.primed = true;
+        }
+    }
+
+    // 設定の再読み込み時に、新しい容量のキャッシュへ引き継ぐ
+    public void transferTo(ChatHistoryCache target) {
+        for (Map.Entry<String, ChannelHistory> entry : channels.entrySet()) {
+            ChannelHistory history = entry.getValue();
+            for (ChatMessage message : history.recent(target.size)) {
+                target.add(message);
+            }
+            ChannelHistory copied = target.channels.get(entry.getKey());
+            if (copied != null) {
+                copied.primed = history.primed;
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    public int getMaxChannels() {
+        return maxChannels;
+    }
+}
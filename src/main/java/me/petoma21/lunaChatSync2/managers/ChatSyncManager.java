@@ -1,70 +1,418 @@
 package me.petoma21.lunaChatSync2.managers;
 
-import org.bukkit.Bukkit;
-import org.bukkit.scheduler.BukkitTask;
 import me.petoma21.lunaChatSync2.LunaChatSync2;
 import me.petoma21.lunaChatSync2.config.ConfigManager;
+import me.petoma21.lunaChatSync2.config.ConfigSnapshot;
+import me.petoma21.lunaChatSync2.database.ChannelRoute;
+import me.petoma21.lunaChatSync2.database.DatabaseManager;
+import me.petoma21.lunaChatSync2.metrics.SyncMetrics;
 import me.petoma21.lunaChatSync2.models.ChatMessage;
-import com.github.ucchyocean.lc3.LunaChat;
-import com.github.ucchyocean.lc3.LunaChatAPI;
-import com.github.ucchyocean.lc3.member.ChannelMember;
-
+import me.petoma21.lunaChatSync2.transport.MessageTransport;
+import me.petoma21.lunaChatSync2.transport.NoopTransport;
+import me.petoma21.lunaChatSync2.transport.RelayServer;
+import me.petoma21.lunaChatSync2.transport.RelayTransport;
+import me.petoma21.lunaChatSync2.util.MessageIdGenerator;
+import me.petoma21.lunaChatSync2.util.MessageIdWindow;
+
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ChatSyncManager {
 
-    private final LunaChatSync2 plugin;
+    private final Logger logger;
     private final ConfigManager configManager;
-    private final Set<String> processedMessages;
-    private BukkitTask syncTask;
+    private final DatabaseManager databaseManager;
+    private final SyncMetrics metrics;
+    private final SyncScheduler scheduler;
+    private final ChatDelivery delivery;
+    // チャットイベントから送信処理への受け渡し
+    private final OutgoingChatQueue outgoingQueue;
+    private volatile MessageIdWindow processedMessages;
+    // チャンネルごとの直近のチャット
+    private volatile ChatHistoryCache historyCache;
+    private final Set<String> primingChannels = ConcurrentHashMap.newKeySet();
+    // メインスレッドへの配信キュー
+    private volatile DeliveryQueue deliveryQueue;
+    // 次回取得の起点（コミット順の入れ替わりに備えて、確定前の範囲は読み直す）
+    private final FetchWindow fetchWindow;
+    // 読み直しで見つかった、後からコミットされた行の数
+    private final AtomicLong lateMessages;
+    // 配信済みの最大ID（sync_status.last_message_idとして保存）
+    private final AtomicLong deliveredCursor;
+    // データベースで確定済みの既読位置
+    private final AtomicLong acknowledgedCursor;
+    private final AtomicBoolean cursorLoading;
+    private final AtomicBoolean ackInFlight;
+    private final AtomicLong ackFailures;
+    // 取得対象のチャンネル（未解決・再解決待ちの場合はnull）
+    private volatile ChannelRoute channelRoute;
+    private final AtomicLong routeResolutions;
+    // 取得後に対象外と判定したメッセージ数（取得条件で絞り切れなかった分）
+    private final AtomicLong unroutedMessages;
+    private SyncScheduler.Task syncTask;
+    private MessageTransport transport;
+    private RelayServer relayServer;
+
+    // ポーリングの自己スケジューリング（同時に実行するクエリは常に1件）
+    private final Object scheduleLock = new Object();
+    private final AtomicBoolean pollInFlight;
+    private final AtomicLong pollCount;
+    private final AtomicLong skippedPolls;
+    private volatile boolean running;
+    private volatile long currentInterval;
+
+    // 配信処理（メインスレッド）で使い回す
+    private final StringBuilder displayBuffer = new StringBuilder(256);
 
     public ChatSyncManager(LunaChatSync2 plugin) {
-        this.plugin = plugin;
-        this.configManager = plugin.getConfigManager();
-        this.processedMessages = ConcurrentHashMap.newKeySet();
+        this(plugin.getLogger(), plugin.getConfigManager(), plugin.getDatabaseManager(), plugin.getMetrics(),
+                new BukkitSyncScheduler(plugin), new LunaChatDelivery());
+    }
+
+    // サーバーを起動せずに使う場合（負荷試験）は scheduler と delivery を差し替える
+    public ChatSyncManager(Logger logger, ConfigManager configManager, DatabaseManager databaseManager,
+                           SyncMetrics metrics, SyncScheduler scheduler, ChatDelivery delivery) {
+        this.logger = logger;
+        this.configManager = configManager;
+        this.databaseManager = databaseManager;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        this.delivery = delivery;
+        this.processedMessages = createDedupWindow();
+        this.historyCache = createHistoryCache();
+        this.fetchWindow = new FetchWindow(configManager.getCatchUpSettleMillis());
+        this.lateMessages = new AtomicLong();
+        this.deliveredCursor = new AtomicLong(-1L);
+        this.acknowledgedCursor = new AtomicLong(-1L);
+        this.cursorLoading = new AtomicBoolean(false);
+        this.ackInFlight = new AtomicBoolean(false);
+        this.ackFailures = new AtomicLong();
+        this.routeResolutions = new AtomicLong();
+        this.unroutedMessages = new AtomicLong();
+        this.pollInFlight = new AtomicBoolean(false);
+        this.pollCount = new AtomicLong();
+        this.skippedPolls = new AtomicLong();
+        this.outgoingQueue = new OutgoingChatQueue(logger, configManager, createIdGenerator(),
+                configManager.getHandoffCapacity(), this::publishLocal);
+        outgoingQueue.start();
+        this.deliveryQueue = createDeliveryQueue();
+        deliveryQueue.start();
+        startTransport();
         startSyncTask();
     }
 
+    private MessageIdGenerator createIdGenerator() {
+        return MessageIdGenerator.create(configManager.getIdGenerator(), configManager.getServerName());
+    }
+
+    private ChatHistoryCache createHistoryCache() {
+        return new ChatHistoryCache(configManager.getHistorySize(), configManager.getHistoryMaxChannels());
+    }
+
+    private MessageIdWindow createDedupWindow() {
+        return new MessageIdWindow(configManager.getDedupCapacity(), configManager.getDedupWindowSeconds() * 1000L);
+    }
+
+    private DeliveryQueue createDeliveryQueue() {
+        return new DeliveryQueue(scheduler, metrics, configManager.getDeliveryTickBudgetMicros(), configManager.getDeliveryMaxPerTick(),
+                this::deliver, () -> acknowledge(configManager.getServerName()));
+    }
+
+    private void startTransport() {
+        String type = configManager.getTransportType().toLowerCase();
+
+        if (type.equals("relay") && configManager.getRelaySecret().isEmpty()) {
+            // 認証なしでは誰でもチャットを流し込めるため、シークレットが無い場合はリレーを使わない
+            logger.severe("transport.relay.secret is not set, falling back to database polling");
+            transport = new NoopTransport();
+        } else if (type.equals("relay")) {
+            if (configManager.isRelayEmbeddedServer()) {
+                relayServer = new RelayServer(logger, configManager.getRelayBindAddress(), configManager.getRelayPort(),
+                        configManager.getRelaySecret());
+                try {
+                    relayServer.start();
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Failed to start embedded chat relay server", e);
+                    relayServer = null;
+                }
+            }
+            transport = new RelayTransport(logger, configManager.getRelayHost(),
+                    configManager.getRelayPort(), configManager.getRelaySecret(), configManager.getRelayReconnectDelay());
+        } else {
+            transport = new NoopTransport();
+        }
+
+        try {
+            transport.subscribe(configManager.getSnapshot().getSubscription());
+            transport.start(this::onTransportMessage);
+            logger.info("Chat transport: " + transport.getName());
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to start chat transport, falling back to database polling", e);
+            transport = new NoopTransport();
+        }
+    }
+
+    // チャットイベントから呼ばれる。フィルタ判定と保存は専用スレッドで行う
+    public boolean submitLocal(String playerName, UUID playerUuid, String channelName, String message) {
+        return outgoingQueue.submit(playerName, playerUuid, channelName, message);
+    }
+
+    // ローカルのチャットを保存し、即時配信経路にも流す
+    public boolean publishLocal(ChatMessage message) {
+        if (!databaseManager.saveChatMessage(message)) {
+            return false;
+        }
+        metrics.getMessagesPublished().increment();
+        historyCache.add(message);
+        transport.publish(message);
+        wakeUp();
+        return true;
+    }
+
+    // 即時配信で受信したメッセージ（データベースのポーリングで後から届いた分は重複として除外される）
+    private void onTransportMessage(ChatMessage message) {
+        if (message.getServerName().equals(configManager.getServerName())) {
+            return;
+        }
+        deliveryQueue.add(message);
+    }
+
     private void startSyncTask() {
-        long delay = Math.max(configManager.getSyncDelay() / 50, 1); // ticks
+        running = true;
+        currentInterval = getMinPollInterval();
+        scheduleNextPoll(currentInterval);
 
-        syncTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
-            syncMessages();
-        }, delay, delay);
+        logger.info("Chat sync task started with interval: " + getMinPollInterval() +
+                "-" + getMaxPollInterval() + "ms");
+    }
 
-        plugin.getLogger().info("Chat sync task started with delay: " + delay + " ticks");
+    // 即時配信が接続中の場合、データベースは取りこぼし補完のみなので間隔を空ける
+    private long getMinPollInterval() {
+        long min = Math.max(configManager.getSyncDelay(), 50L);
+        if (transport != null && transport.isConnected()) {
+            min = Math.max(min, configManager.getTransportCatchUpInterval());
+        }
+        return min;
     }
 
-    private void syncMessages() {
-        if (!configManager.isChatSyncEnabled()) {
+    private long getMaxPollInterval() {
+        return Math.max(configManager.getPollMaxInterval(), getMinPollInterval());
+    }
+
+    private void scheduleNextPoll(long delayMillis) {
+        synchronized (scheduleLock) {
+            if (!running) {
+                return;
+            }
+            if (syncTask != null) {
+                syncTask.cancel();
+            }
+            syncTask = scheduler.runLaterAsync(this::poll, delayMillis);
+        }
+    }
+
+    private void poll() {
+        if (!running) {
             return;
         }
 
+        // 配信待ちが溜まっている間は取得を控える
+        if (deliveryQueue.getDepth() >= configManager.getCatchUpMaxQueued()) {
+            skippedPolls.incrementAndGet();
+            scheduleNextPoll(getMinPollInterval());
+            return;
+        }
+
+        // データベースが遮断中の間は新しいクエリを積まない（再開は接続確認の成功後）
+        if (!databaseManager.isAvailable()) {
+            skippedPolls.incrementAndGet();
+            scheduleNextPoll(getMaxPollInterval());
+            return;
+        }
+
+        if (!pollInFlight.compareAndSet(false, true)) {
+            skippedPolls.incrementAndGet();
+            return;
+        }
+
+        pollCount.incrementAndGet();
+        syncMessages().whenComplete((rows, throwable) -> {
+            pollInFlight.set(false);
+
+            // ページが埋まった場合は続きをすぐに取得する
+            if (rows != null && rows >= configManager.getCatchUpPageSize()) {
+                currentInterval = getMinPollInterval();
+                scheduleNextPoll(0);
+                return;
+            }
+
+            // メッセージがあれば最短間隔に戻し、無ければ最大間隔まで徐々に延ばす
+            long min = getMinPollInterval();
+            long max = getMaxPollInterval();
+            if (rows != null && rows > 0) {
+                currentInterval = min;
+            } else {
+                long next = (long) (currentInterval * configManager.getPollBackoffMultiplier());
+                currentInterval = Math.min(Math.max(next, min), max);
+            }
+            scheduleNextPoll(currentInterval);
+        });
+    }
+
+    // ローカルの送信があった場合などに、待機中のポーリングを最短間隔で実行し直す
+    private void wakeUp() {
+        long min = getMinPollInterval();
+        if (currentInterval <= min) {
+            return;
+        }
+
+        currentInterval = min;
+        if (!pollInFlight.get()) {
+            scheduleNextPoll(min);
+        }
+    }
+
+    // 取得した件数を返す
+    private CompletableFuture<Integer> syncMessages() {
+        if (!configManager.isChatSyncEnabled()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
         String serverName = configManager.getServerName();
 
-        plugin.getDatabaseManager().getUnprocessedMessages(serverName)
-                .thenAccept(messages -> {
-                    if (messages.isEmpty()) {
-                        return;
+        // 既読位置が未取得の場合は先に読み込む
+        if (!fetchWindow.isLoaded()) {
+            return loadCursor(serverName).thenApply(ignored -> 0);
+        }
+
+        // 前回失敗した確定処理を再試行
+        acknowledge(serverName);
+
+        ChannelRoute route = channelRoute;
+        CompletableFuture<ChannelRoute> routeFuture = route != null
+                ? CompletableFuture.completedFuture(route)
+                : resolveRoute();
+
+        return routeFuture
+                .thenCompose(resolved -> fetchMessages(serverName, resolved))
+                .exceptionally(throwable -> {
+                    metrics.getPollErrors().increment();
+                    logger.severe("Failed to sync messages: " + throwable.getMessage());
+                    return 0;
+                });
+    }
+
+    private CompletableFuture<Integer> fetchMessages(String serverName, ChannelRoute route) {
+        long start = System.nanoTime();
+        long startedAt = System.currentTimeMillis();
+        int pageSize = configManager.getCatchUpPageSize();
+
+        return databaseManager.getMessagesAfter(serverName, fetchWindow.getSettled(), fetchWindow.getFetched(),
+                        fetchWindow.getSeenIds(), pageSize, route)
+                .thenApply(page -> {
+                    List<ChatMessage> messages = page.getAllMessages();
+                    metrics.getPollLatency().recordNanosAsMicros(start);
+                    metrics.getRowsPerPoll().record(messages.size());
+
+                    // 取得中に受信範囲が変わった場合は、新しい条件で取得し直す（取得位置は進めない）
+                    if (channelRoute != route) {
+                        return 0;
+                    }
+
+                    // 配信キューに入れてから確定位置を進める（確定位置までの行は必ず配信キューか配信済み）
+                    if (!messages.isEmpty()) {
+                        metrics.getMessagesFetched().add(messages.size());
+                        lateMessages.addAndGet(page.getLateMessages().size());
+
+                        if (configManager.isDebugEnabled()) {
+                            logger.info("Processing " + messages.size() + " new messages" +
+                                    (page.getLateMessages().isEmpty() ? "" : " (" + page.getLateMessages().size() + " committed late)"));
+                        }
+
+                        // メインスレッドで少しずつ配信（既読位置の確定は配信後）
+                        deliveryQueue.addAll(messages);
                     }
 
+                    int fetched = page.getMessages().size();
+                    fetchWindow.update(page, fetched >= pageSize, startedAt);
+                    return fetched;
+                });
+    }
+
+    // 設定の受信範囲をチャンネルIDに解決する（起動時・再読み込み後・未知のチャンネルを受け取った後）
+    private CompletableFuture<ChannelRoute> resolveRoute() {
+        return databaseManager.resolveRoute(configManager.getSnapshot())
+                .thenApply(route -> {
+                    channelRoute = route;
+                    routeResolutions.incrementAndGet();
                     if (configManager.isDebugEnabled()) {
-                        plugin.getLogger().info("Processing " + messages.size() + " unprocessed messages");
+                        logger.info("Channel route resolved: " + route.describe());
                     }
+                    return route;
+                });
+    }
 
-                    // メインスレッドで処理
-                    Bukkit.getScheduler().runTask(plugin, () -> {
-                        for (ChatMessage message : messages) {
-                            processReceivedMessage(message);
+    private CompletableFuture<Void> loadCursor(String serverName) {
+        if (!cursorLoading.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // 長時間停止していた場合、古すぎる履歴は再生しない
+        long maxAgeMillis = configManager.getCatchUpMaxAgeMinutes() * 60L * 1000L;
+        long minTimestamp = maxAgeMillis > 0 ? System.currentTimeMillis() - maxAgeMillis : 0L;
+
+        return databaseManager.getSyncCursor(serverName, minTimestamp)
+                .thenAccept(cursor -> {
+                    if (!fetchWindow.isLoaded()) {
+                        fetchWindow.reset(cursor);
+                        deliveredCursor.accumulateAndGet(cursor, Math::max);
+                        acknowledgedCursor.accumulateAndGet(cursor, Math::max);
+                        if (configManager.isDebugEnabled()) {
+                            logger.info("Sync cursor loaded: " + cursor);
                         }
-                    });
+                    }
+                }).exceptionally(throwable -> {
+                    logger.severe("Failed to load sync cursor: " + throwable.getMessage());
+                    return null;
+                }).whenComplete((ignored, throwable) -> cursorLoading.set(false));
+    }
 
+    // 配信済み位置をまとめて確定する。同時に実行するのは1件のみで、失敗時は次の周期で再試行
+    // 確定するのは読み直しが済んだ位置（settled）まで。再起動後に後からコミットされた行を読み落とさない
+    private void acknowledge(String serverName) {
+        long cursor = Math.min(deliveredCursor.get(), fetchWindow.getSettled());
+        if (cursor <= acknowledgedCursor.get() || !databaseManager.isAvailable()
+                || !ackInFlight.compareAndSet(false, true)) {
+            return;
+        }
+
+        databaseManager.acknowledgeMessages(serverName, cursor)
+                .thenAccept(success -> {
+                    if (success) {
+                        acknowledgedCursor.accumulateAndGet(cursor, Math::max);
+                    } else {
+                        ackFailures.incrementAndGet();
+                    }
                 }).exceptionally(throwable -> {
-                    plugin.getLogger().severe("Failed to sync messages: " + throwable.getMessage());
+                    ackFailures.incrementAndGet();
+                    logger.severe("Failed to acknowledge messages: " + throwable.getMessage());
                     return null;
-                });
+                }).whenComplete((ignored, throwable) -> ackInFlight.set(false));
+    }
+
+    // 配信キューから呼ばれる（メインスレッド）
+    private void deliver(ChatMessage message) {
+        processReceivedMessage(message);
+        deliveredCursor.accumulateAndGet(message.getId(), Math::max);
     }
 
     private void processReceivedMessage(ChatMessage message) {
@@ -73,96 +421,228 @@ public class ChatSyncManager {
             return;
         }
 
+        ConfigSnapshot config = configManager.getSnapshot();
+
         // チャンネルが同期対象かチェック
-        if (!configManager.shouldSyncChannel(message.getChannelName())) {
+        if (!config.shouldSyncChannel(message.getChannelName())) {
+            unroutedMessages.incrementAndGet();
+            // 取得条件を解決した後に作られたチャンネル。次回のポーリングで除外し直す
+            ChannelRoute route = channelRoute;
+            if (route != null && !route.covers(message.getChannelName())) {
+                channelRoute = null;
+            }
             markAsProcessed(message.getMessageId());
             return;
         }
 
         try {
-            // LunaChatのAPIを使用してメッセージを送信
-            LunaChatAPI api = LunaChat.getAPI();
-
-            if (api != null) {
-                // サーバー名フォーマットを適用
-                String formattedServerName = configManager.formatServerName(message.getServerName());
-
-                // %server%プレースホルダーを置換したメッセージを構築
-                String displayMessage = String.format("%s <%s> %s",
-                        formattedServerName,
-                        message.getPlayerName(),
-                        message.getMessage()
-                );
-
-//                // 指定チャンネルにメッセージを送信
-//                api.sendMessage(null, message.getChannelName(),
-//                        displayMessage, "[VelocityChatSync]", true);
-
-                if (configManager.isDebugEnabled()) {
-                    plugin.getLogger().info("Broadcasted message from " +
+            // 表示形式を適用したメッセージを構築（配信はメインスレッドのみのためバッファを使い回す）
+            displayBuffer.setLength(0);
+            String displayMessage = config.getDisplayTemplate().render(displayBuffer, message).toString();
+
+            if (delivery.deliver(message, displayMessage)) {
+                if (config.isDebugEnabled()) {
+                    logger.info("Broadcasted message from " +
                             message.getServerName() + ": " + message.getPlayerName() +
                             " -> " + message.getMessage());
                 }
+
+                metrics.getMessagesDelivered().increment();
+                metrics.getEndToEndLatency().record(System.currentTimeMillis() - message.getTimestamp());
+                historyCache.add(message);
             }
 
         } catch (Exception e) {
-            plugin.getLogger().severe("Failed to process received message: " + e.getMessage());
-            e.printStackTrace();
+            logger.log(Level.SEVERE, "Failed to process received message", e);
         }
 
         markAsProcessed(message.getMessageId());
     }
 
     private void markAsProcessed(String messageId) {
+        // 容量・保持期間を超えたIDは古い順に追い出される
         processedMessages.add(messageId);
+    }
 
-        // データベース上でも処理済みとしてマーク
-        plugin.getDatabaseManager().markMessageAsProcessed(messageId)
-                .exceptionally(throwable -> {
-                    plugin.getLogger().severe("Failed to mark message as processed: " + throwable.getMessage());
-                    return null;
+    // チャンネルの直近 limit 件（古い順）。バッファに無い分だけデータベースから読み込む
+    public CompletableFuture<List<ChatMessage>> getHistory(String channelName, int limit) {
+        ChatHistoryCache history = historyCache;
+        List<ChatMessage> cached = history.getRecent(channelName, limit);
+        if (cached.size() >= limit || (history.isPrimed(channelName) && limit <= history.getSize())) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return databaseManager.getRecentMessages(channelName, Math.max(limit, history.getSize()))
+                .thenApply(rows -> {
+                    history.prime(channelName, rows);
+                    if (limit <= history.getSize()) {
+                        return history.getRecent(channelName, limit);
+                    }
+                    return rows.size() > limit ? rows.subList(rows.size() - limit, rows.size()) : rows;
                 });
+    }
 
-        // メモリ使用量を制限するため、古い処理済みメッセージIDを削除
-        if (processedMessages.size() > 10000) {
-            processedMessages.clear();
+    // 起動後にまだ過去分を読み込んでいないチャンネルを、バックグラウンドで1回だけ読み込む
+    public void primeHistory(Collection<String> channelNames) {
+        ChatHistoryCache history = historyCache;
+        for (String channelName : channelNames) {
+            if (history.isPrimed(channelName) || !primingChannels.add(channelName)) {
+                continue;
+            }
+            getHistory(channelName, history.getSize())
+                    .exceptionally(throwable -> {
+                        if (configManager.isDebugEnabled()) {
+                            logger.warning("Failed to load chat history for " + channelName + ": " + throwable.getMessage());
+                        }
+                        return null;
+                    })
+                    .whenComplete((ignored, throwable) -> primingChannels.remove(channelName));
         }
     }
 
+    public ChatHistoryCache getHistoryCache() {
+        return historyCache;
+    }
+
     public void forceSync() {
         if (configManager.isDebugEnabled()) {
-            plugin.getLogger().info("Force syncing messages...");
+            logger.info("Force syncing messages...");
         }
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, this::syncMessages);
+        currentInterval = getMinPollInterval();
+        if (pollInFlight.get()) {
+            skippedPolls.incrementAndGet();
+            return;
+        }
+        scheduleNextPoll(0);
     }
 
     public void reload() {
-        shutdown();
-        processedMessages.clear();
+        stopSync();
+        MessageIdWindow previousProcessed = processedMessages;
+        MessageIdWindow processed = createDedupWindow();
+        previousProcessed.transferTo(processed);
+        processedMessages = processed;
+
+        // 受信範囲が広がった場合、これまで条件で除外していたチャンネルの行は取得位置より前にある
+        // 最後に配信した位置まで戻して新しい条件で読み直す（配信済みの行は重複として除外される）
+        long delivered = Math.min(deliveredCursor.get(), fetchWindow.getSettled());
+        if (fetchWindow.isLoaded() && delivered >= 0) {
+            fetchWindow.reset(delivered);
+        }
+        channelRoute = null;
+        outgoingQueue.setIdGenerator(createIdGenerator());
+        ChatHistoryCache previousHistory = historyCache;
+        ChatHistoryCache history = createHistoryCache();
+        previousHistory.transferTo(history);
+        historyCache = history;
+        delivery.reset();
+
+        // 未配信のメッセージは新しい設定のキューへ引き継ぐ
+        DeliveryQueue previous = deliveryQueue;
+        deliveryQueue = createDeliveryQueue();
+        previous.transferTo(deliveryQueue);
+        deliveryQueue.start();
+
+        startTransport();
         startSyncTask();
-        plugin.getLogger().info("ChatSyncManager reloaded");
+        logger.info("ChatSyncManager reloaded");
     }
 
     public void shutdown() {
-        if (syncTask != null && !syncTask.isCancelled()) {
-            syncTask.cancel();
-            plugin.getLogger().info("Chat sync task stopped");
+        // 受け付け済みの発言を書き込みキューと即時配信へ渡してから止める
+        outgoingQueue.shutdown();
+        stopSync();
+    }
+
+    private void stopSync() {
+        synchronized (scheduleLock) {
+            running = false;
+            if (syncTask != null) {
+                syncTask.cancel();
+                syncTask = null;
+                logger.info("Chat sync task stopped");
+            }
+        }
+
+        deliveryQueue.stop();
+        if (transport != null) {
+            transport.close();
+        }
+        if (relayServer != null) {
+            relayServer.stop();
+            relayServer = null;
         }
 
         // 最後の同期ステータス更新
-        plugin.getDatabaseManager().updateSyncStatus(configManager.getServerName())
-                .exceptionally(throwable -> {
-                    plugin.getLogger().severe("Failed to update final sync status: " + throwable.getMessage());
-                    return null;
-                });
+        acknowledge(configManager.getServerName());
+    }
+
+    public OutgoingChatQueue getOutgoingQueue() {
+        return outgoingQueue;
+    }
+
+    public DeliveryQueue getDeliveryQueue() {
+        return deliveryQueue;
     }
 
     public boolean isRunning() {
-        return syncTask != null && !syncTask.isCancelled();
+        return running;
+    }
+
+    public long getCurrentPollInterval() {
+        return currentInterval;
+    }
+
+    public long getPollCount() {
+        return pollCount.get();
+    }
+
+    public long getSkippedPollCount() {
+        return skippedPolls.get();
     }
 
     public int getProcessedMessageCount() {
         return processedMessages.size();
     }
+
+    public long getLastDeliveredId() {
+        return deliveredCursor.get();
+    }
+
+    public MessageTransport getTransport() {
+        return transport;
+    }
+
+    public RelayServer getRelayServer() {
+        return relayServer;
+    }
+
+    public FetchWindow getFetchWindow() {
+        return fetchWindow;
+    }
+
+    public long getLateMessageCount() {
+        return lateMessages.get();
+    }
+
+    public long getLastAcknowledgedId() {
+        return acknowledgedCursor.get();
+    }
+
+    public long getAckFailureCount() {
+        return ackFailures.get();
+    }
+
+    public ChannelRoute getChannelRoute() {
+        return channelRoute;
+    }
+
+    public long getRouteResolutionCount() {
+        return routeResolutions.get();
+    }
+
+    public long getUnroutedMessageCount() {
+        return unroutedMessages.get();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package me.petoma21.lunaChatSync2.managers;
+
+import me.petoma21.lunaChatSync2.metrics.SyncMetrics;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// 受信メッセージをメインスレッドへ渡すキュー
+// 毎tick、時間予算と件数上限の範囲で取り出して配信し、残りは次のtickへ持ち越す
+// 障害復旧後などに大量のメッセージが届いても1tickに詰め込まないため、TPSが落ちない
+public class DeliveryQueue {
+
+    private final SyncScheduler scheduler;
+    private final SyncMetrics metrics;
+    private final Consumer<ChatMessage> handler;
+    private final Runnable afterDrain;
+    private final long budgetNanos;
+    private final int maxPerTick;
+
+    private final ConcurrentLinkedQueue<ChatMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private SyncScheduler.Task task;
+
+    // 統計（tickの処理時間は配信があったtickのみ集計）
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder busyTicks = new LongAdder();
+    private final LongAdder spilledTicks = new LongAdder();
+    private final LongAdder totalTickNanos = new LongAdder();
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+    private volatile int maxDepth;
+
+    // handler はメインスレッドで1件ずつ、afterDrain は配信があったtickの最後に呼ばれる
+    public DeliveryQueue(SyncScheduler scheduler, SyncMetrics metrics, long budgetMicros, int maxPerTick,
+                         Consumer<ChatMessage> handler, Runnable afterDrain) {
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.handler = handler;
+        this.afterDrain = afterDrain;
+        this.budgetNanos = Math.max(budgetMicros, 1L) * 1000L;
+        this.maxPerTick = Math.max(maxPerTick, 1);
+    }
+
+    public void start() {
+        task = scheduler.runEveryTick(this::drain);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    // どのスレッドからでも呼べる
+    public void add(ChatMessage message) {
+        queue.add(message);
+        updateMaxDepth(depth.incrementAndGet());
+    }
+
+    public void addAll(Collection<ChatMessage> messages) {
+        queue.addAll(messages);
+        updateMaxDepth(depth.addAndGet(messages.size()));
+    }
+
+    // 未配信のメッセージを別のキューへ移す（リロード時）
+    public void transferTo(DeliveryQueue other) {
+        ChatMessage message;
+        while ((message = queue.poll()) != null) {
+            depth.decrementAndGet();
+            other.add(message);
+        }
+    }
+
+    private void updateMaxDepth(int current) {
+        if (current > maxDepth) {
+            maxDepth = current;
+        }
+    }
+
+    private void drain() {
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int count = 0;
+        ChatMessage message;
+
+        // 予算を超えても最低1件は配信する
+        while (count < maxPerTick && (message = queue.poll()) != null) {
+            depth.decrementAndGet();
+            handler.accept(message);
+            count++;
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+
+        afterDrain.run();
+
+        long elapsed = System.nanoTime() - start;
+        delivered.add(count);
+        busyTicks.increment();
+        totalTickNanos.add(elapsed);
+        metrics.getDeliveryTickTime().record(elapsed / 1000L);
+        lastTickNanos = elapsed;
+        if (elapsed > maxTickNanos) {
+            maxTickNanos = elapsed;
+        }
+        if (!queue.isEmpty()) {
+            spilledTicks.increment();
+        }
+    }
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public long getBusyTickCount() {
+        return busyTicks.sum();
+    }
+
+    // 予算・件数上限により次のtickへ持ち越したtick数
+    public long getSpilledTickCount() {
+        return spilledTicks.sum();
+    }
+
+    public long getLastTickMicros() {
+        return lastTickNanos / 1000L;
+    }
+
+    public long getMaxTickMicros() {
+        return maxTickNanos / 1000L;
+    }
+
+    public double getAverageTickMicros() {
+        long ticks = busyTicks.sum();
+        return ticks == 0 ? 0.0 : totalTickNanos.sum() / 1000.0 / ticks;
+    }
+
+    public long getBudgetMicros() {
+        return budgetNanos / 1000L;
+    }
+
+    public int getMaxPerTick() {
+        return maxPerTick;
+    }
+}
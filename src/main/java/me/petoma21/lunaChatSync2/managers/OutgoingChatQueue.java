@@ -0,0 +1,188 @@
+package me.petoma21.lunaChatSync2.managers;
+
+import me.petoma21.lunaChatSync2.config.ConfigManager;
+import me.petoma21.lunaChatSync2.config.ConfigSnapshot;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+import me.petoma21.lunaChatSync2.util.MessageIdGenerator;
+import me.petoma21.lunaChatSync2.util.MpscRingBuffer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// チャットイベントから送信処理への受け渡し
+// イベント処理中は発言の内容をリングバッファに積むだけにし、メッセージID の生成・フィルタ判定・
+// ChatMessage の構築・書き込みキューへの追加は専用スレッドで行う
+public class OutgoingChatQueue implements Runnable {
+
+    // イベント時点で取り出した値のみを持つ
+    private static final class PendingChat {
+        final String playerName;
+        final UUID playerUuid;
+        final String channelName;
+        final String message;
+        final long timestamp;
+
+        PendingChat(String playerName, UUID playerUuid, String channelName, String message, long timestamp) {
+            this.playerName = playerName;
+            this.playerUuid = playerUuid;
+            this.channelName = channelName;
+            this.message = message;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private final Predicate<ChatMessage> publisher;
+    private final MpscRingBuffer<PendingChat> buffer;
+    private volatile MessageIdGenerator idGenerator;
+    private volatile Thread thread;
+    private volatile boolean running;
+    // 専用スレッドが空のため休んでいる（または休もうとしている）間 true。追加側はこのときだけ unpark する
+    private volatile boolean idle;
+
+    // 統計
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder filtered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    // publisher は書き込みキューへの追加（受け付けられなかった場合は false）
+    public OutgoingChatQueue(Logger logger, ConfigManager configManager, MessageIdGenerator idGenerator,
+                             int capacity, Predicate<ChatMessage> publisher) {
+        this.logger = logger;
+        this.configManager = configManager;
+        this.idGenerator = idGenerator;
+        this.publisher = publisher;
+        this.buffer = new MpscRingBuffer<>(capacity);
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "LunaChatSync2-Publisher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // チャットイベントのスレッドから呼ばれる。満杯の場合は待たずに false
+    public boolean submit(String playerName, UUID playerUuid, String channelName, String message) {
+        if (!buffer.offer(new PendingChat(playerName, playerUuid, channelName, message, System.currentTimeMillis()))) {
+            rejected.increment();
+            return false;
+        }
+        submitted.increment();
+        // 空から積まれたときだけ起こす（取り出し側が処理中の間は volatile の読み取りのみ）
+        if (idle) {
+            Thread consumer = thread;
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        while (running || !buffer.isEmpty()) {
+            PendingChat pending = buffer.poll();
+            if (pending == null) {
+                // idle を立ててから空であることを確認し直す。その間に積まれた場合は、
+                // こちらが要素に気づくか、追加側が idle を見て unpark するかのどちらかになる
+                idle = true;
+                if (buffer.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                continue;
+            }
+
+            try {
+                publish(pending);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Failed to publish chat message", e);
+            }
+        }
+    }
+
+    private void publish(PendingChat pending) {
+        // 1件ごとに同じ設定を参照する
+        ConfigSnapshot config = configManager.getSnapshot();
+
+        if (!config.isChatSyncEnabled()
+                || !config.shouldSyncMessage(pending.playerName, pending.channelName, pending.message)) {
+            filtered.increment();
+            return;
+        }
+
+        ChatMessage chatMessage = ChatMessage.local(
+                idGenerator,
+                config.getServerName(),
+                pending.playerName,
+                pending.playerUuid.toString(),
+                pending.channelName,
+                pending.message,
+                pending.timestamp
+        );
+
+        if (!publisher.test(chatMessage)) {
+            dropped.increment();
+            logger.warning("Chat write queue is full, message dropped: " + chatMessage.getMessageId());
+            return;
+        }
+
+        if (config.isDebugEnabled()) {
+            logger.info("Chat message queued: " + chatMessage.getMessageId());
+        }
+    }
+
+    // 設定の再読み込み時（サーバー名や生成方法の変更）
+    public void setIdGenerator(MessageIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    // 受け付け済みの発言は書き込みキューへ渡してから終了する
+    public void shutdown() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public MessageIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    public int getDepth() {
+        return buffer.size();
+    }
+
+    public int getCapacity() {
+        return buffer.capacity();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getFilteredCount() {
+        return filtered.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,16 @@
+package me.petoma21.lunaChatSync2.managers;
+
+// ChatSyncManager が使うスケジューラ
+// サーバー上では Bukkit のスケジューラ（BukkitSyncScheduler）、負荷試験ではサーバー無しの実装を使う
+public interface SyncScheduler {
+
+    interface Task {
+        void cancel();
+    }
+
+    // delayMillis 後に非同期スレッドで実行
+    Task runLaterAsync(Runnable task, long delayMillis);
+
+    // メインスレッドで毎tick実行
+    Task runEveryTick(Runnable task);
+}
@@ -0,0 +1,70 @@
+package me.petoma21.lunaChatSync2.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+// Prometheus から取得するための /metrics エンドポイント（JDK標準のHTTPサーバー）
+public class MetricsHttpServer {
+
+    private final Logger logger;
+    private final SyncMetrics metrics;
+    private final String bindAddress;
+    private final int port;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsHttpServer(Logger logger, SyncMetrics metrics, String bindAddress, int port) {
+        this.logger = logger;
+        this.metrics = metrics;
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/metrics", this::handle);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LunaChatSync2-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Metrics endpoint listening on http://" + bindAddress + ":" + port + "/metrics");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package me.petoma21.lunaChatSync2.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// 同期処理の計測値。記録はどのスレッドからでもロックなしで行える
+public class SyncMetrics {
+
+    // 送信元サーバーでの発言から、このサーバーで配信するまで（サーバー間の時計のずれを含む）
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram(
+            "lunachatsync_end_to_end_latency", "Origin chat timestamp to local delivery", "milliseconds");
+    private final LatencyHistogram insertLatency = new LatencyHistogram(
+            "lunachatsync_insert_latency", "Batched INSERT of chat messages", "microseconds");
+    private final LatencyHistogram pollLatency = new LatencyHistogram(
+            "lunachatsync_poll_latency", "Fetch of new messages from the database", "microseconds");
+    private final LatencyHistogram rowsPerPoll = new LatencyHistogram(
+            "lunachatsync_rows_per_poll", "Rows returned by one poll", "rows");
+    private final LatencyHistogram poolWait = new LatencyHistogram(
+            "lunachatsync_pool_wait", "Wait for a connection from the pool", "microseconds");
+    private final LatencyHistogram deliveryTickTime = new LatencyHistogram(
+            "lunachatsync_delivery_tick_time", "Main-thread time spent delivering per tick", "microseconds");
+    private final LatencyHistogram listenerTime = new LatencyHistogram(
+            "lunachatsync_listener_time", "Time spent in the chat event handler", "nanoseconds");
+
+    private final LongAdder messagesPublished = new LongAdder();
+    private final LongAdder messagesInserted = new LongAdder();
+    private final LongAdder messagesFetched = new LongAdder();
+    private final LongAdder messagesDelivered = new LongAdder();
+    private final LongAdder insertErrors = new LongAdder();
+    private final LongAdder pollErrors = new LongAdder();
+
+    private final long startTime = System.currentTimeMillis();
+
+    public LatencyHistogram getEndToEndLatency() {
+        return endToEndLatency;
+    }
+
+    public LatencyHistogram getInsertLatency() {
+        return insertLatency;
+    }
+
+    public LatencyHistogram getPollLatency() {
+        return pollLatency;
+    }
+
+    public LatencyHistogram getRowsPerPoll() {
+        return rowsPerPoll;
+    }
+
+    public LatencyHistogram getPoolWait() {
+        return poolWait;
+    }
+
+    public LatencyHistogram getDeliveryTickTime() {
+        return deliveryTickTime;
+    }
+
+    public LatencyHistogram getListenerTime() {
+        return listenerTime;
+    }
+
+    public List<LatencyHistogram> getHistograms() {
+        return List.of(endToEndLatency, insertLatency, pollLatency, rowsPerPoll, poolWait, deliveryTickTime, listenerTime);
+    }
+
+    public LongAdder getMessagesPublished() {
+        return messagesPublished;
+    }
+
+    public LongAdder getMessagesInserted() {
+        return messagesInserted;
+    }
+
+    public LongAdder getMessagesFetched() {
+        return messagesFetched;
+    }
+
+    public LongAdder getMessagesDelivered() {
+        return messagesDelivered;
+    }
+
+    public LongAdder getInsertErrors() {
+        return insertErrors;
+    }
+
+    public LongAdder getPollErrors() {
+        return pollErrors;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    // Prometheus のテキスト形式で出力
+    public String toPrometheus() {
+        StringBuilder builder = new StringBuilder(4096);
+        counter(builder, "lunachatsync_messages_published_total", "Local chat messages accepted for sync", messagesPublished.sum());
+        counter(builder, "lunachatsync_messages_inserted_total", "Chat messages written to the database", messagesInserted.sum());
+        counter(builder, "lunachatsync_messages_fetched_total", "Chat messages fetched from other servers", messagesFetched.sum());
+        counter(builder, "lunachatsync_messages_delivered_total", "Chat messages delivered on this server", messagesDelivered.sum());
+        counter(builder, "lunachatsync_insert_errors_total", "Failed batched inserts", insertErrors.sum());
+        counter(builder, "lunachatsync_poll_errors_total", "Failed polls", pollErrors.sum());
+
+        for (LatencyHistogram histogram : getHistograms()) {
+            String name = histogram.getName() + "_" + histogram.getUnit();
+            builder.append("# HELP ").append(name).append(' ').append(histogram.getHelp()).append('\n');
+            builder.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                builder.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(histogram.getValueAtQuantile(quantile)).append('\n');
+            }
+            builder.append(name).append("_sum ").append(histogram.getSum()).append('\n');
+            builder.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static void counter(StringBuilder builder, String name, String help, long value) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" counter\n");
+        builder.append(name).append(' ').append(value).append('\n');
+    }
+}
@@ -0,0 +1,59 @@
+package me.petoma21.lunaChatSync2.models;
+
+import java.util.Collection;
+import java.util.Set;
+
+// サーバーが受信するチャンネルの範囲（リレーの転送先の判定に使う）
+// INCLUDE: 列挙したチャンネルのみ / EXCLUDE: 列挙したチャンネル以外の全て / ALL: 全て
+public final class ChannelSubscription {
+
+    public enum Mode {
+        ALL,
+        INCLUDE,
+        EXCLUDE
+    }
+
+    public static final ChannelSubscription ALL = new ChannelSubscription(Mode.ALL, Set.of());
+
+    private final Mode mode;
+    private final Set<String> channelNames;
+
+    private ChannelSubscription(Mode mode, Set<String> channelNames) {
+        this.mode = mode;
+        this.channelNames = channelNames;
+    }
+
+    public static ChannelSubscription include(Collection<String> channelNames) {
+        return new ChannelSubscription(Mode.INCLUDE, Set.copyOf(channelNames));
+    }
+
+    // 除外するチャンネルが無い場合は ALL
+    public static ChannelSubscription exclude(Collection<String> channelNames) {
+        return channelNames.isEmpty() ? ALL : new ChannelSubscription(Mode.EXCLUDE, Set.copyOf(channelNames));
+    }
+
+    public boolean matches(String channelName) {
+        return switch (mode) {
+            case ALL -> true;
+            case INCLUDE -> channelNames.contains(channelName);
+            case EXCLUDE -> !channelNames.contains(channelName);
+        };
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Set<String> getChannelNames() {
+        return channelNames;
+    }
+
+    // 状態表示用
+    public String describe() {
+        return switch (mode) {
+            case ALL -> "all channels";
+            case INCLUDE -> channelNames.size() + " channel(s)";
+            case EXCLUDE -> "all except " + channelNames.size() + " channel(s)";
+        };
+    }
+}
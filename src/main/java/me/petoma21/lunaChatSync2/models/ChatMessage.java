@@ -1,39 +1,69 @@
 package me.petoma21.lunaChatSync2.models;
 
-import java.util.UUID;
+import me.petoma21.lunaChatSync2.util.MessageCodec;
+import me.petoma21.lunaChatSync2.util.MessageIdGenerator;
 
 public class ChatMessage {
 
+    private final long id;
     private final String messageId;
     private final String serverName;
     private final String playerName;
     private final String playerUuid;
     private final String channelName;
-    private final String message;
+    // 圧縮して保存されていた本文は、最初に getMessage() が呼ばれたときに展開する
+    // （重複・対象外として配信しないメッセージは展開しない）。複数スレッドで同時に展開しても結果は同じ
+    private String message;
+    private final byte[] compressedMessage;
     private final long timestamp;
 
-    public ChatMessage(String serverName, String playerName, String playerUuid,
-                       String channelName, String message) {
-        this.messageId = UUID.randomUUID().toString();
+    public ChatMessage(String messageId, String serverName, String playerName,
+                       String playerUuid, String channelName, String message, long timestamp) {
+        this(0L, messageId, serverName, playerName, playerUuid, channelName, message, timestamp);
+    }
+
+    // データベースから読み込んだメッセージ（idはchat_messagesの自動採番ID）
+    public ChatMessage(long id, String messageId, String serverName, String playerName,
+                       String playerUuid, String channelName, String message, long timestamp) {
+        this.id = id;
+        this.messageId = messageId;
         this.serverName = serverName;
         this.playerName = playerName;
         this.playerUuid = playerUuid;
         this.channelName = channelName;
         this.message = message;
-        this.timestamp = System.currentTimeMillis();
+        this.compressedMessage = null;
+        this.timestamp = timestamp;
     }
 
-    public ChatMessage(String messageId, String serverName, String playerName,
-                       String playerUuid, String channelName, String message, long timestamp) {
+    private ChatMessage(long id, String messageId, String serverName, String playerName,
+                        String playerUuid, String channelName, byte[] compressedMessage, long timestamp) {
+        this.id = id;
         this.messageId = messageId;
         this.serverName = serverName;
         this.playerName = playerName;
         this.playerUuid = playerUuid;
         this.channelName = channelName;
-        this.message = message;
+        this.compressedMessage = compressedMessage;
         this.timestamp = timestamp;
     }
 
+    // このサーバーの発言（メッセージIDは idGenerator で生成、timestamp は発言した時刻）
+    public static ChatMessage local(MessageIdGenerator idGenerator, String serverName, String playerName, String playerUuid,
+                                    String channelName, String message, long timestamp) {
+        return new ChatMessage(idGenerator.nextId(), serverName, playerName, playerUuid, channelName, message, timestamp);
+    }
+
+    // データベースから読み込んだ、本文が圧縮されているメッセージ（MessageCodec の形式）
+    public static ChatMessage compressed(long id, String messageId, String serverName, String playerName,
+                                         String playerUuid, String channelName, byte[] compressedMessage, long timestamp) {
+        return new ChatMessage(id, messageId, serverName, playerName, playerUuid, channelName, compressedMessage, timestamp);
+    }
+
+    public long getId() {
+        return id;
+    }
+
     public String getMessageId() {
         return messageId;
     }
@@ -55,7 +85,12 @@ public class ChatMessage {
     }
 
     public String getMessage() {
-        return message;
+        String decoded = message;
+        if (decoded == null) {
+            decoded = MessageCodec.decode(compressedMessage);
+            message = decoded;
+        }
+        return decoded;
     }
 
     public long getTimestamp() {
@@ -65,7 +100,7 @@ public class ChatMessage {
     @Override
     public String toString() {
         return String.format("ChatMessage{id='%s', server='%s', player='%s', channel='%s', message='%s', timestamp=%d}",
-                messageId, serverName, playerName, channelName, message, timestamp);
+                messageId, serverName, playerName, channelName, getMessage(), timestamp);
     }
 
     @Override
@@ -0,0 +1,27 @@
+package me.petoma21.lunaChatSync2.transport;
+
+import me.petoma21.lunaChatSync2.models.ChannelSubscription;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+// サーバー間の即時配信経路。MySQLは永続ログと取りこぼし時の補完に使う
+public interface MessageTransport {
+
+    // 受信したメッセージはreceiverに渡される（呼び出しスレッドは実装依存）
+    void start(Consumer<ChatMessage> receiver) throws IOException;
+
+    // 送信できない状態の場合は破棄してよい（データベース経由で補完される）
+    void publish(ChatMessage message);
+
+    // このサーバーが受信するチャンネル。配信経路側で絞り込める場合は範囲外のメッセージを送らせない
+    // （再接続時にも通知し直す）
+    void subscribe(ChannelSubscription subscription);
+
+    boolean isConnected();
+
+    String getName();
+
+    void close();
+}
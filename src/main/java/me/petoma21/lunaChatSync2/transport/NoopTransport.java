@@ -0,0 +1,36 @@
+package me.petoma21.lunaChatSync2.transport;
+
+import me.petoma21.lunaChatSync2.models.ChannelSubscription;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.util.function.Consumer;
+
+// 即時配信を使わない場合の実装（データベースのポーリングのみ）
+public class NoopTransport implements MessageTransport {
+
+    @Override
+    public void start(Consumer<ChatMessage> receiver) {
+    }
+
+    @Override
+    public void publish(ChatMessage message) {
+    }
+
+    @Override
+    public void subscribe(ChannelSubscription subscription) {
+    }
+
+    @Override
+    public boolean isConnected() {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "none";
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,170 @@
+package me.petoma21.lunaChatSync2.transport;
+
+import me.petoma21.lunaChatSync2.models.ChannelSubscription;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// リレーのフレーム形式: [長さ int][種別 byte][本体]
+// TYPE_SUBSCRIBE はクライアントからリレーへの受信範囲の通知で、リレーは転送せずに転送先の判定に使う
+// （旧バージョンのリレーは他のクライアントへ転送するが、クライアントは MESSAGE 以外を読み飛ばす）
+// 接続直後にリレーが CHALLENGE（乱数）を送り、クライアントは共有シークレットによる HMAC-SHA256 を AUTH で返す
+// 認証が済むまでリレーは他のフレームを受け付けない
+public final class RelayProtocol {
+
+    public static final byte TYPE_MESSAGE = 1;
+    public static final byte TYPE_SUBSCRIBE = 2;
+    public static final byte TYPE_CHALLENGE = 3;
+    public static final byte TYPE_AUTH = 4;
+
+    private static final int NONCE_LENGTH = 32;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // MESSAGE の本体でチャンネル名より前にある文字列の数（メッセージID・サーバー名・プレイヤー名・UUID）
+    private static final int FIELDS_BEFORE_CHANNEL = 4;
+
+    public static final int MAX_FRAME_SIZE = 64 * 1024;
+
+    private RelayProtocol() {
+    }
+
+    public static byte[] encodeMessage(ChatMessage message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + message.getMessage().length() * 3);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TYPE_MESSAGE);
+            out.writeUTF(message.getMessageId());
+            out.writeUTF(message.getServerName());
+            out.writeUTF(message.getPlayerName());
+            out.writeUTF(message.getPlayerUuid());
+            out.writeUTF(message.getChannelName());
+            out.writeUTF(message.getMessage());
+            out.writeLong(message.getTimestamp());
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ChatMessage decodeMessage(DataInputStream in) throws IOException {
+        return new ChatMessage(
+                in.readUTF(),
+                in.readUTF(),
+                in.readUTF(),
+                in.readUTF(),
+                in.readUTF(),
+                in.readUTF(),
+                in.readLong()
+        );
+    }
+
+    // リレー側で転送先を決めるため、メッセージ全体を復元せずにチャンネル名だけを読む
+    public static String readChannelName(byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame, 1, frame.length - 1));
+        for (int i = 0; i < FIELDS_BEFORE_CHANNEL; i++) {
+            in.skipNBytes(in.readUnsignedShort());
+        }
+        return in.readUTF();
+    }
+
+    public static byte[] encodeSubscription(ChannelSubscription subscription) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + subscription.getChannelNames().size() * 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TYPE_SUBSCRIBE);
+            out.writeByte(subscription.getMode().ordinal());
+            out.writeInt(subscription.getChannelNames().size());
+            for (String channelName : subscription.getChannelNames()) {
+                out.writeUTF(channelName);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ChannelSubscription decodeSubscription(DataInputStream in) throws IOException {
+        int mode = in.readUnsignedByte();
+        int count = in.readInt();
+        if (mode >= ChannelSubscription.Mode.values().length || count < 0 || count > MAX_FRAME_SIZE / 2) {
+            throw new IOException("Invalid relay subscription");
+        }
+        List<String> channelNames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            channelNames.add(in.readUTF());
+        }
+
+        return switch (ChannelSubscription.Mode.values()[mode]) {
+            case ALL -> ChannelSubscription.ALL;
+            case INCLUDE -> ChannelSubscription.include(channelNames);
+            case EXCLUDE -> ChannelSubscription.exclude(channelNames);
+        };
+    }
+
+    public static byte[] newChallenge() {
+        byte[] frame = new byte[1 + NONCE_LENGTH];
+        frame[0] = TYPE_CHALLENGE;
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        System.arraycopy(nonce, 0, frame, 1, NONCE_LENGTH);
+        return frame;
+    }
+
+    // CHALLENGE に対する AUTH フレーム
+    public static byte[] encodeAuth(String secret, byte[] challenge) throws IOException {
+        if (challenge[0] != TYPE_CHALLENGE || challenge.length != 1 + NONCE_LENGTH) {
+            throw new IOException("Expected relay challenge");
+        }
+        byte[] mac = sign(secret, challenge);
+        byte[] frame = new byte[1 + mac.length];
+        frame[0] = TYPE_AUTH;
+        System.arraycopy(mac, 0, frame, 1, mac.length);
+        return frame;
+    }
+
+    public static boolean verifyAuth(String secret, byte[] challenge, byte[] auth) throws IOException {
+        if (auth[0] != TYPE_AUTH) {
+            return false;
+        }
+        byte[] expected = sign(secret, challenge);
+        byte[] actual = new byte[auth.length - 1];
+        System.arraycopy(auth, 1, actual, 0, actual.length);
+        // 比較にかかる時間から値を推測されないように、定数時間で比較する
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private static byte[] sign(String secret, byte[] challenge) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            mac.update(challenge, 1, challenge.length - 1);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to compute relay auth", e);
+        }
+    }
+
+    public static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+        out.flush();
+    }
+
+    // フレーム本体（種別を含む）を読み込む。接続が閉じられた場合はEOFException
+    public static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("Invalid relay frame length: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+}
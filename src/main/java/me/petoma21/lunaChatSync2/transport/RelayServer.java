@@ -0,0 +1,264 @@
+package me.petoma21.lunaChatSync2.transport;
+
+import me.petoma21.lunaChatSync2.models.ChannelSubscription;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// 接続している各サーバーから受け取ったフレームを、送信元以外でそのチャンネルを受信するサーバーへ転送するリレー
+// 受信範囲はクライアントが接続時に SUBSCRIBE で通知する（通知の無いクライアントには全て転送する）
+// 共有シークレットで認証できたクライアントだけを転送の対象にする
+// プラグイン内で起動するか、単体で起動できる（シークレットは環境変数 LUNACHATSYNC_RELAY_SECRET）:
+//   java -cp LunaChatSync2.jar me.petoma21.lunaChatSync2.transport.RelayServer [bind] [port]
+public class RelayServer {
+
+    // 認証の応答を待つ時間
+    private static final int AUTH_TIMEOUT_MILLIS = 5000;
+    // クライアントごとの送信待ちの上限。溢れたクライアントは受信が止まっているとみなして切断する
+    private static final int CLIENT_QUEUE_CAPACITY = 1024;
+
+    private final Logger logger;
+    private final String bindAddress;
+    private final int port;
+    private final String secret;
+    private final Set<Client> clients;
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private volatile boolean running;
+
+    // 受信範囲外のため送らなかったフレーム数
+    private final LongAdder filtered = new LongAdder();
+    // 認証に失敗した接続数
+    private final LongAdder rejected = new LongAdder();
+    // 送信待ちが溢れて切断したクライアント数
+    private final LongAdder overflowed = new LongAdder();
+
+    public RelayServer(Logger logger, String bindAddress, int port, String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("Chat relay secret must not be empty");
+        }
+        this.logger = logger;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.secret = secret;
+        this.clients = ConcurrentHashMap.newKeySet();
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        running = true;
+
+        acceptThread = new Thread(this::acceptLoop, "LunaChatSync2-RelayServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        logger.info("Chat relay server listening on " + bindAddress + ":" + getPort());
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Client client = new Client(socket);
+
+                // 認証は各クライアントのスレッドで行い、済むまで転送先に加えない
+                Thread reader = new Thread(client, "LunaChatSync2-RelayServer-Client");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    logger.log(Level.WARNING, "Chat relay accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void broadcast(Client source, byte[] frame) throws IOException {
+        // チャンネル名は絞り込みをしているクライアントがいる場合だけ読む
+        String channelName = null;
+        for (Client client : clients) {
+            if (client == source) {
+                continue;
+            }
+
+            ChannelSubscription subscription = client.subscription;
+            if (subscription.getMode() != ChannelSubscription.Mode.ALL && frame[0] == RelayProtocol.TYPE_MESSAGE) {
+                if (channelName == null) {
+                    channelName = RelayProtocol.readChannelName(frame);
+                }
+                if (!subscription.matches(channelName)) {
+                    filtered.increment();
+                    continue;
+                }
+            }
+            client.send(frame);
+        }
+    }
+
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public long getFilteredCount() {
+        return filtered.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getOverflowCount() {
+        return overflowed.sum();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+        }
+
+        for (Client client : clients) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    // 受信スレッド（run）と送信スレッド（writeLoop）を持つ
+    // 転送は送信待ちに積むだけにし、遅いクライアントが送信元の受信スレッドを止めないようにする
+    private class Client implements Runnable {
+
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final BlockingQueue<byte[]> sendQueue = new ArrayBlockingQueue<>(CLIENT_QUEUE_CAPACITY);
+        private volatile ChannelSubscription subscription = ChannelSubscription.ALL;
+        private volatile boolean closed;
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void run() {
+            Thread writer = new Thread(this::writeLoop, "LunaChatSync2-RelayServer-Writer");
+            writer.setDaemon(true);
+            writer.start();
+
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (!authenticate(in)) {
+                    rejected.increment();
+                    logger.warning("Rejected chat relay client " + socket.getRemoteSocketAddress() + " (authentication failed)");
+                    return;
+                }
+                clients.add(this);
+
+                while (running) {
+                    byte[] frame = RelayProtocol.readFrame(in);
+                    if (frame[0] == RelayProtocol.TYPE_SUBSCRIBE) {
+                        subscription = RelayProtocol.decodeSubscription(
+                                new DataInputStream(new ByteArrayInputStream(frame, 1, frame.length - 1)));
+                        continue;
+                    }
+                    broadcast(this, frame);
+                }
+            } catch (IOException ignored) {
+                // 切断
+            } finally {
+                close();
+            }
+        }
+
+        private boolean authenticate(DataInputStream in) throws IOException {
+            byte[] challenge = RelayProtocol.newChallenge();
+            send(challenge);
+            socket.setSoTimeout(AUTH_TIMEOUT_MILLIS);
+            try {
+                return RelayProtocol.verifyAuth(secret, challenge, RelayProtocol.readFrame(in));
+            } catch (SocketTimeoutException e) {
+                return false;
+            } finally {
+                socket.setSoTimeout(0);
+            }
+        }
+
+        void send(byte[] frame) {
+            if (!sendQueue.offer(frame)) {
+                overflowed.increment();
+                logger.warning("Disconnected chat relay client " + socket.getRemoteSocketAddress() + " (send queue full)");
+                close();
+            }
+        }
+
+        // 送信待ちが無くなったときだけ flush し、続けて届いたフレームはまとめて書き込む
+        private void writeLoop() {
+            try {
+                while (!closed) {
+                    byte[] frame = sendQueue.poll(500, TimeUnit.MILLISECONDS);
+                    if (frame == null) {
+                        continue;
+                    }
+                    do {
+                        out.writeInt(frame.length);
+                        out.write(frame);
+                    } while ((frame = sendQueue.poll()) != null);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void close() {
+            closed = true;
+            clients.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String bind = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 25590;
+        // コマンドラインに残らないように、シークレットは環境変数で渡す
+        String secret = System.getenv("LUNACHATSYNC_RELAY_SECRET");
+        if (secret == null || secret.isEmpty()) {
+            System.err.println("LUNACHATSYNC_RELAY_SECRET is not set");
+            System.exit(1);
+        }
+
+        RelayServer server = new RelayServer(Logger.getLogger("LunaChatSync2-Relay"), bind, port, secret);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        Thread.currentThread().join();
+    }
+}
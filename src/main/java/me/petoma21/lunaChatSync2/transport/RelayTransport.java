@@ -0,0 +1,229 @@
+package me.petoma21.lunaChatSync2.transport;
+
+import me.petoma21.lunaChatSync2.models.ChannelSubscription;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// TCPリレー（RelayServer）に接続して即時配信するクライアント
+// 接続直後にリレーの CHALLENGE に共有シークレットで応答してから送受信を始める
+public class RelayTransport implements MessageTransport {
+
+    private static final int SEND_QUEUE_CAPACITY = 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+    private static final int AUTH_TIMEOUT_MILLIS = 5000;
+
+    private final Logger logger;
+    private final String host;
+    private final int port;
+    private final String secret;
+    private final long reconnectDelayMillis;
+    private final BlockingQueue<byte[]> sendQueue;
+    private Consumer<ChatMessage> receiver;
+    private volatile ChannelSubscription subscription = ChannelSubscription.ALL;
+    private Thread connectionThread;
+    private volatile Socket socket;
+    private volatile boolean running;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public RelayTransport(Logger logger, String host, int port, String secret, long reconnectDelayMillis) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("Chat relay secret must not be empty");
+        }
+        this.logger = logger;
+        this.host = host;
+        this.port = port;
+        this.secret = secret;
+        this.reconnectDelayMillis = Math.max(reconnectDelayMillis, 100L);
+        this.sendQueue = new ArrayBlockingQueue<>(SEND_QUEUE_CAPACITY);
+    }
+
+    @Override
+    public void start(Consumer<ChatMessage> receiver) {
+        this.receiver = receiver;
+        running = true;
+        connectionThread = new Thread(this::connectLoop, "LunaChatSync2-Relay");
+        connectionThread.setDaemon(true);
+        connectionThread.start();
+    }
+
+    @Override
+    public void publish(ChatMessage message) {
+        if (!isConnected()) {
+            return;
+        }
+
+        try {
+            if (!sendQueue.offer(RelayProtocol.encodeMessage(message))) {
+                dropped.increment();
+            }
+        } catch (IOException e) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    public void subscribe(ChannelSubscription subscription) {
+        this.subscription = subscription;
+        if (isConnected()) {
+            sendSubscription();
+        }
+    }
+
+    private void sendSubscription() {
+        try {
+            if (!sendQueue.offer(RelayProtocol.encodeSubscription(subscription))) {
+                logger.warning("Failed to send channel subscription to chat relay (send queue full)");
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to encode channel subscription", e);
+        }
+    }
+
+    // 接続が切れた場合は reconnect-delay 後に再接続する
+    private void connectLoop() {
+        while (running) {
+            try (Socket connection = new Socket()) {
+                connection.setTcpNoDelay(true);
+                connection.setKeepAlive(true);
+                connection.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                authenticate(connection, in);
+                socket = connection;
+                sendQueue.clear();
+                // 受信範囲はリレー側で接続ごとに保持されるため、接続のたびに最初に送る
+                sendSubscription();
+                logger.info("Connected to chat relay " + host + ":" + port);
+
+                Thread sender = new Thread(() -> sendLoop(connection), "LunaChatSync2-Relay-Sender");
+                sender.setDaemon(true);
+                sender.start();
+
+                readLoop(in);
+            } catch (IOException e) {
+                if (running) {
+                    logger.log(Level.FINE, "Chat relay connection failed", e);
+                }
+            } finally {
+                if (socket != null) {
+                    logger.warning("Disconnected from chat relay " + host + ":" + port);
+                }
+                socket = null;
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // 送信スレッドを起動する前に応答する（以降の書き込みは送信スレッドのみ）
+    private void authenticate(Socket connection, DataInputStream in) throws IOException {
+        connection.setSoTimeout(AUTH_TIMEOUT_MILLIS);
+        byte[] challenge;
+        try {
+            challenge = RelayProtocol.readFrame(in);
+        } catch (SocketTimeoutException e) {
+            throw new IOException("Chat relay did not send an auth challenge (relay is older than this client?)", e);
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        RelayProtocol.writeFrame(out, RelayProtocol.encodeAuth(secret, challenge));
+        connection.setSoTimeout(0);
+    }
+
+    private void readLoop(DataInputStream in) throws IOException {
+        while (running) {
+            byte[] frame = RelayProtocol.readFrame(in);
+            if (frame[0] != RelayProtocol.TYPE_MESSAGE) {
+                continue;
+            }
+
+            DataInputStream body = new DataInputStream(new ByteArrayInputStream(frame, 1, frame.length - 1));
+            ChatMessage message = RelayProtocol.decodeMessage(body);
+            received.increment();
+            receiver.accept(message);
+        }
+    }
+
+    private void sendLoop(Socket connection) {
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            while (running && socket == connection) {
+                byte[] frame = sendQueue.poll(500, TimeUnit.MILLISECONDS);
+                if (frame != null) {
+                    RelayProtocol.writeFrame(out, frame);
+                    published.increment();
+                }
+            }
+        } catch (IOException e) {
+            closeQuietly(connection);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        Socket current = socket;
+        return current != null && current.isConnected() && !current.isClosed();
+    }
+
+    @Override
+    public String getName() {
+        return "relay";
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            closeQuietly(current);
+        }
+        if (connectionThread != null) {
+            connectionThread.interrupt();
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package me.petoma21.lunaChatSync2.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// チャット本文の圧縮（chat_messages.message_compressed）
+// UTF-8 で threshold-bytes 以上の本文だけを Deflate で圧縮し、短い本文や小さくならない本文はそのまま TEXT に保存する
+// 形式: [展開後のバイト数 varint][raw Deflate]（zlib ヘッダ・チェックサムは付けない）
+public final class MessageCodec {
+
+    // Deflater/Inflater はネイティブメモリを持つため、スレッドごとに使い回す
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final int thresholdBytes;
+    private final int level;
+    private final ThreadLocal<Deflater> deflater;
+
+    // 統計（圧縮を試みた本文のみ）
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+
+    public MessageCodec(int thresholdBytes, int level) {
+        this.thresholdBytes = Math.max(thresholdBytes, 1);
+        this.level = Math.min(Math.max(level, Deflater.BEST_SPEED), Deflater.BEST_COMPRESSION);
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(this.level, true));
+    }
+
+    // 圧縮した本文を返す。閾値未満、または圧縮しても小さくならない場合は null（TEXT のまま保存する）
+    public byte[] encode(String message) {
+        // UTF-8 は1文字3バイト以下のため、文字数で明らかに閾値未満のものは変換せずに判定する
+        if (message.length() * 3 < thresholdBytes) {
+            return null;
+        }
+        byte[] raw = message.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < thresholdBytes) {
+            return null;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length);
+        writeVarInt(out, raw.length);
+
+        Deflater deflater = this.deflater.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buffer = new byte[raw.length];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            out.write(buffer, 0, length);
+            // 元より大きくなる場合は打ち切る
+            if (out.size() >= raw.length) {
+                return null;
+            }
+        }
+
+        byte[] encoded = out.toByteArray();
+        compressed.increment();
+        rawBytes.add(raw.length);
+        storedBytes.add(encoded.length);
+        return encoded;
+    }
+
+    public static String decode(byte[] encoded) {
+        int position = 0;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = encoded[position++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(encoded, position, encoded.length - position);
+        byte[] raw = new byte[length];
+        try {
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(raw, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Truncated compressed chat message");
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed chat message", e);
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getCompressedCount() {
+        return compressed.sum();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    public long getStoredBytes() {
+        return storedBytes.sum();
+    }
+}
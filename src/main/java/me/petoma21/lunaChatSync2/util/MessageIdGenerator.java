@@ -0,0 +1,18 @@
+package me.petoma21.lunaChatSync2.util;
+
+// メッセージID（UUID文字列）の生成方法
+// time-ordered: 時刻順に並ぶ UUIDv7。message_id の索引へ末尾に追加されるため、ページ分割が起きにくい
+// random: 従来の UUID.randomUUID()（SecureRandom を使う）
+public interface MessageIdGenerator {
+
+    String nextId();
+
+    String getName();
+
+    static MessageIdGenerator create(String type, String serverName) {
+        if (type != null && type.trim().equalsIgnoreCase("random")) {
+            return new RandomIdGenerator();
+        }
+        return new TimeOrderedIdGenerator(serverName);
+    }
+}
@@ -0,0 +1,206 @@
+package me.petoma21.lunaChatSync2.util;
+
+import java.util.Arrays;
+
+// 処理済みメッセージIDの重複判定用。固定容量のリングバッファと、128bit IDのオープンアドレス法ハッシュ表で構成
+// 容量超過または保持期間切れのIDを古い順に1件ずつ追い出すため、一括クリアで重複配信が起きることはない
+public class MessageIdWindow {
+
+    private final int capacity;
+    private final long windowMillis;
+
+    // リングバッファ（挿入順）
+    private final long[] ringHigh;
+    private final long[] ringLow;
+    private final long[] ringTime;
+    private int head;
+    private int size;
+
+    // ハッシュ表。値はリング上の位置+1（0は空き）
+    private final int[] slots;
+    private final int mask;
+
+    public MessageIdWindow(int capacity, long windowMillis) {
+        this.capacity = Math.max(capacity, 16);
+        this.windowMillis = windowMillis;
+        this.ringHigh = new long[this.capacity];
+        this.ringLow = new long[this.capacity];
+        this.ringTime = new long[this.capacity];
+
+        int tableSize = Integer.highestOneBit(this.capacity * 2 - 1) << 1;
+        this.slots = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    // 未登録なら登録してtrue、登録済みならfalse
+    public synchronized boolean add(String messageId) {
+        return add(high(messageId), low(messageId), System.currentTimeMillis());
+    }
+
+    private boolean add(long high, long low, long now) {
+        expire(now);
+        if (find(high, low) >= 0) {
+            return false;
+        }
+        if (size == capacity) {
+            evictOldest();
+        }
+
+        int index = head;
+        ringHigh[index] = high;
+        ringLow[index] = low;
+        ringTime[index] = now;
+        head = (head + 1) % capacity;
+        size++;
+
+        int slot = slotOf(high, low);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index + 1;
+        return true;
+    }
+
+    public synchronized boolean contains(String messageId) {
+        expire(System.currentTimeMillis());
+        return find(high(messageId), low(messageId)) >= 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    // 設定の再読み込み時に、新しい容量のウィンドウへ古い順に引き継ぐ（記録時刻も保つ）
+    public synchronized void transferTo(MessageIdWindow target) {
+        synchronized (target) {
+            int oldest = oldestIndex();
+            for (int i = 0; i < size; i++) {
+                int index = (oldest + i) % capacity;
+                target.add(ringHigh[index], ringLow[index], ringTime[index]);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(slots, 0);
+        head = 0;
+        size = 0;
+    }
+
+    private void expire(long now) {
+        if (windowMillis <= 0) {
+            return;
+        }
+        long cutoff = now - windowMillis;
+        while (size > 0 && ringTime[oldestIndex()] < cutoff) {
+            evictOldest();
+        }
+    }
+
+    private int oldestIndex() {
+        int index = head - size;
+        return index < 0 ? index + capacity : index;
+    }
+
+    private void evictOldest() {
+        int index = oldestIndex();
+        int slot = findSlot(ringHigh[index], ringLow[index], index);
+        size--;
+        if (slot >= 0) {
+            removeSlot(slot);
+        }
+    }
+
+    // ハッシュ表上のリング位置を返す（無ければ-1）
+    private int find(long high, long low) {
+        int slot = slotOf(high, low);
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int index = entry - 1;
+            if (ringHigh[index] == high && ringLow[index] == low) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int findSlot(long high, long low, int index) {
+        int slot = slotOf(high, low);
+        while (slots[slot] != 0) {
+            if (slots[slot] == index + 1) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // 線形探索の連続性を保つため、後続のエントリを詰める（後方シフト削除）
+    private void removeSlot(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (slots[next] != 0) {
+            int index = slots[next] - 1;
+            int home = slotOf(ringHigh[index], ringLow[index]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[hole] = 0;
+    }
+
+    private int slotOf(long high, long low) {
+        long hash = high * 0x9E3779B97F4A7C15L ^ low;
+        hash ^= hash >>> 32;
+        hash *= 0xD6E8FEB86659FD93L;
+        hash ^= hash >>> 32;
+        return (int) hash & mask;
+    }
+
+    // UUID形式のIDは16進数をそのまま128bitとして扱い、それ以外はハッシュ値を使う
+    private static long high(String id) {
+        return isUuid(id) ? parseHex(id, 0, 18) : hash(id, 0x9E3779B97F4A7C15L);
+    }
+
+    private static long low(String id) {
+        return isUuid(id) ? parseHex(id, 19, 36) : hash(id, 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private static boolean isUuid(String id) {
+        return id.length() == 36 && id.charAt(8) == '-' && id.charAt(13) == '-'
+                && id.charAt(18) == '-' && id.charAt(23) == '-';
+    }
+
+    private static long parseHex(String id, int from, int to) {
+        long value = 0L;
+        for (int i = from; i < to; i++) {
+            char c = id.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            value = (value << 4) | Character.digit(c, 16);
+        }
+        return value;
+    }
+
+    private static long hash(String id, long seed) {
+        long hash = seed;
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,92 @@
+package me.petoma21.lunaChatSync2.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// 複数スレッドから追加し、1スレッドだけが取り出す固定長のリングバッファ（Dmitry Vyukov の有界キュー）
+// 各スロットの sequence で「書き込み可能」「読み出し可能」を判定するため、ロックもメモリ確保も行わない
+// 追加は tail の CAS 1回とスロットへの書き込みのみ。満杯の場合は待たずに false を返す
+public class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+
+    // 追加側（複数スレッド）と取り出し側（1スレッド）の位置。偽共有を避けるため別オブジェクトに置く
+    private final AtomicLong tail = new AtomicLong();
+    private final PaddedCounter head = new PaddedCounter();
+
+    @SuppressWarnings("unused")
+    private static final class PaddedCounter {
+        long p1, p2, p3, p4, p5, p6, p7;
+        volatile long value;
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // どのスレッドからでも呼べる
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            long diff = sequence - position;
+
+            if (diff == 0) {
+                // このスロットは空いている。tail を進められたスレッドが書き込む
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                // 1周前のスロットがまだ取り出されていない（満杯）
+                return false;
+            } else {
+                // 他のスレッドが先に進めた
+                position = tail.get();
+            }
+        }
+    }
+
+    // 取り出し側のスレッドのみが呼ぶ。空の場合は null
+    public E poll() {
+        long position = head.value;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        head.value = position + 1;
+        // 次の周回の追加を許可する
+        sequences.set(index, position + mask + 1);
+        return element;
+    }
+
+    public boolean isEmpty() {
+        return sequences.get((int) head.value & mask) != head.value + 1;
+    }
+
+    // 概算（並行して追加・取り出しが行われる）
+    public int size() {
+        long size = tail.get() - head.value;
+        return (int) Math.max(0L, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,17 @@
+package me.petoma21.lunaChatSync2.util;
+
+import java.util.UUID;
+
+// 従来のランダムな UUID（バージョン4）
+public class RandomIdGenerator implements MessageIdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+}
@@ -0,0 +1,58 @@
+package me.petoma21.lunaChatSync2.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+// 時刻順に並ぶ UUIDv7（RFC 9562）を、ロックなしで単調増加に生成する
+// 上位64bit: [Unix時刻 ms 48bit][バージョン 4bit][同一ms内の連番 12bit]
+// 下位64bit: [バリアント 2bit][サーバー名のハッシュ 32bit][起動ごとの乱数 30bit]
+// 同じサーバー内では時刻と連番で、サーバー間では下位64bitで重複しない
+// 1ms に4096件を超えた場合や時計が戻った場合は、直前の値の続きを使う（時刻は実際より進むことがある）
+public class TimeOrderedIdGenerator implements MessageIdGenerator {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final long VERSION = 0x7L << SEQUENCE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long VARIANT = 0x2L << 62;
+
+    private final long leastSignificantBits;
+    // [時刻 ms][連番 12bit] の直前の値
+    private final AtomicLong last = new AtomicLong();
+
+    public TimeOrderedIdGenerator(String serverName) {
+        this(nodeHash(serverName), new SecureRandom().nextInt() & 0x3FFF_FFFF);
+    }
+
+    TimeOrderedIdGenerator(long node, long instance) {
+        this.leastSignificantBits = VARIANT | (node & 0xFFFF_FFFFL) << 30 | (instance & 0x3FFF_FFFFL);
+    }
+
+    private static long nodeHash(String serverName) {
+        CRC32 crc = new CRC32();
+        crc.update(serverName.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    @Override
+    public String nextId() {
+        long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(now, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        long mostSignificantBits = timestamp << 16 | VERSION | (next & SEQUENCE_MASK);
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
+    }
+
+    @Override
+    public String getName() {
+        return "time-ordered";
+    }
+}
@@ -0,0 +1,24 @@
+package me.petoma21.lunaChatSync2.util;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+// UUID文字列とBINARY(16)列の相互変換
+public final class UuidBytes {
+
+    private UuidBytes() {
+    }
+
+    public static byte[] toBytes(String uuid) {
+        UUID value = UUID.fromString(uuid);
+        return ByteBuffer.allocate(16)
+                .putLong(value.getMostSignificantBits())
+                .putLong(value.getLeastSignificantBits())
+                .array();
+    }
+
+    public static String fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong()).toString();
+    }
+}
@@ -0,0 +1,105 @@
+package me.petoma21.lunaChatSync2.soak;
+
+import me.petoma21.lunaChatSync2.metrics.LatencyHistogram;
+
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 送信したメッセージと、各サーバーでの受信を突き合わせる
+public class SoakResults {
+
+    private final int servers;
+    private final ConcurrentHashMap<String, Sent> sent = new ConcurrentHashMap<>();
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder echoes = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram(
+            "soak_cross_server_latency", "Cross-server latency", "milliseconds");
+
+    private static final class Sent {
+        final int origin;
+        final BitSet receivers;
+
+        Sent(int origin, int servers) {
+            this.origin = origin;
+            this.receivers = new BitSet(servers);
+        }
+    }
+
+    public SoakResults(int servers) {
+        this.servers = servers;
+    }
+
+    public void recordSent(String messageId, int origin) {
+        sent.put(messageId, new Sent(origin, servers));
+        sentCount.increment();
+    }
+
+    // 書き込みキューが満杯で受け付けられなかった
+    public void recordRejected(String messageId) {
+        sent.remove(messageId);
+        sentCount.decrement();
+        rejected.increment();
+    }
+
+    public void recordDelivered(String messageId, int receiver, long timestamp) {
+        Sent message = sent.get(messageId);
+        if (message == null) {
+            unknown.increment();
+            return;
+        }
+        if (message.origin == receiver) {
+            echoes.increment();
+            return;
+        }
+
+        boolean first;
+        synchronized (message.receivers) {
+            first = !message.receivers.get(receiver);
+            message.receivers.set(receiver);
+        }
+        if (!first) {
+            duplicates.increment();
+            return;
+        }
+        delivered.increment();
+        latency.record(System.currentTimeMillis() - timestamp);
+    }
+
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getExpectedDeliveries() {
+        return sentCount.sum() * (servers - 1);
+    }
+
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    // 送信元のサーバー自身に配信された件数（本来0）
+    public long getEchoCount() {
+        return echoes.sum();
+    }
+
+    public long getUnknownCount() {
+        return unknown.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
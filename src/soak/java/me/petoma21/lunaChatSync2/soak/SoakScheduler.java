@@ -0,0 +1,44 @@
+package me.petoma21.lunaChatSync2.soak;
+
+import me.petoma21.lunaChatSync2.managers.SyncScheduler;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Bukkit のスケジューラの代わり。サーバーごとに「メインスレッド」を1本持ち、非同期処理は共有のスレッドで行う
+// Bukkit と同じく、遅延はtick（50ms）単位に切り上げる
+public class SoakScheduler implements SyncScheduler {
+
+    private static final long TICK_MILLIS = 50L;
+
+    private final ScheduledExecutorService mainThread;
+    private final ScheduledExecutorService asyncPool;
+
+    public SoakScheduler(String serverName, ScheduledExecutorService asyncPool) {
+        this.asyncPool = asyncPool;
+        this.mainThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, serverName + "-main");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Task runLaterAsync(Runnable task, long delayMillis) {
+        long ticks = Math.max((delayMillis + TICK_MILLIS - 1) / TICK_MILLIS, 1);
+        ScheduledFuture<?> future = asyncPool.schedule(task, ticks * TICK_MILLIS, TimeUnit.MILLISECONDS);
+        return () -> future.cancel(false);
+    }
+
+    @Override
+    public Task runEveryTick(Runnable task) {
+        ScheduledFuture<?> future = mainThread.scheduleAtFixedRate(task, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        return () -> future.cancel(false);
+    }
+
+    public void shutdown() {
+        mainThread.shutdownNow();
+    }
+}
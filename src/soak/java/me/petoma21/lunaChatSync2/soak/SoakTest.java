@@ -0,0 +1,266 @@
+package me.petoma21.lunaChatSync2.soak;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import me.petoma21.lunaChatSync2.config.ConfigManager;
+import me.petoma21.lunaChatSync2.database.DatabaseManager;
+import me.petoma21.lunaChatSync2.managers.ChatSyncManager;
+import me.petoma21.lunaChatSync2.metrics.LatencyHistogram;
+import me.petoma21.lunaChatSync2.metrics.SyncMetrics;
+import me.petoma21.lunaChatSync2.models.ChatMessage;
+import me.petoma21.lunaChatSync2.util.MessageIdGenerator;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// 複数サーバーの同期を1つのデータベースに対して再現する負荷試験
+// Bukkit サーバー無しで ChatSyncManager / DatabaseManager を servers 個起動し、一定の割合で発言を流して
+// 全サーバーへの配信漏れ・重複・サーバー間の遅延・データベース負荷を集計する
+//
+// 実行: mvn -Psoak compile exec:exec -Dsoak.args="-Dsoak.servers=20 -Dsoak.players=2000"
+// 設定（システムプロパティ）:
+//   soak.servers          サーバー数（20）
+//   soak.players          全体のプレイヤー数（2000）
+//   soak.rate             1プレイヤーあたりの発言数/分（6）
+//   soak.duration         発言を流す時間（秒、60）
+//   soak.drain            送信停止後に配信を待つ最大時間（秒、30）
+//   soak.pool-size        サーバーごとのコネクションプール数（4）
+//   soak.db.host など     指定した場合は組み込みの MariaDB の代わりに既存のデータベースを使う
+// 配信漏れまたは重複があった場合は終了コード1
+public class SoakTest {
+
+    private static final Logger LOGGER = Logger.getLogger("LunaChatSync2-Soak");
+
+    private static final String[] STATUS_KEYS = {
+            "Questions", "Com_select", "Com_insert", "Com_update", "Innodb_rows_read", "Innodb_rows_inserted"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int servers = Integer.getInteger("soak.servers", 20);
+        int players = Integer.getInteger("soak.players", 2000);
+        double rate = Double.parseDouble(System.getProperty("soak.rate", "6"));
+        int durationSeconds = Integer.getInteger("soak.duration", 60);
+        int drainSeconds = Integer.getInteger("soak.drain", 30);
+        int poolSize = Integer.getInteger("soak.pool-size", 4);
+
+        DB embedded = null;
+        String host = System.getProperty("soak.db.host");
+        int port = Integer.getInteger("soak.db.port", 3306);
+        String database = System.getProperty("soak.db.database", "lunachatsync_soak");
+        String username = System.getProperty("soak.db.username", "root");
+        String password = System.getProperty("soak.db.password", "");
+        if (host == null) {
+            DBConfigurationBuilder dbConfig = DBConfigurationBuilder.newBuilder();
+            dbConfig.setPort(0);
+            embedded = DB.newEmbeddedDB(dbConfig.build());
+            embedded.start();
+            embedded.createDB(database);
+            host = "127.0.0.1";
+            port = dbConfig.getPort();
+        }
+        String jdbcUrl = "jdbc:mysql://" + host + ":" + port + "/" + database + "?useSSL=false&allowPublicKeyRetrieval=true";
+
+        LOGGER.info("Starting " + servers + " servers, " + players + " players at " + rate + " msg/min each for " +
+                durationSeconds + "s");
+
+        SoakResults results = new SoakResults(servers);
+        ScheduledExecutorService asyncPool = Executors.newScheduledThreadPool(
+                Math.max(Runtime.getRuntime().availableProcessors(), 4), daemon("soak-async"));
+
+        List<SyncMetrics> metrics = new ArrayList<>();
+        List<DatabaseManager> databaseManagers = new ArrayList<>();
+        List<ChatSyncManager> syncManagers = new ArrayList<>();
+        List<SoakScheduler> schedulers = new ArrayList<>();
+        List<MessageIdGenerator> idGenerators = new ArrayList<>();
+
+        for (int i = 0; i < servers; i++) {
+            String serverName = "soak-" + i;
+            YamlConfiguration config = bundledConfig();
+            config.set("server.name", serverName);
+            config.set("database.host", host);
+            config.set("database.port", port);
+            config.set("database.database", database);
+            config.set("database.username", username);
+            config.set("database.password", password);
+            config.set("database.pool.maximum-pool-size", poolSize);
+            config.set("database.pool.minimum-idle", 1);
+            config.set("logging.save-to-file", false);
+            ConfigManager configManager = new ConfigManager(config);
+
+            SyncMetrics serverMetrics = new SyncMetrics();
+            DatabaseManager databaseManager = new DatabaseManager(Logger.getLogger(serverName), configManager,
+                    serverMetrics, Files.createTempDirectory(serverName).toFile());
+            if (!databaseManager.initialize()) {
+                throw new IllegalStateException("Failed to initialize database for " + serverName);
+            }
+
+            int receiver = i;
+            SoakScheduler scheduler = new SoakScheduler(serverName, asyncPool);
+            ChatSyncManager syncManager = new ChatSyncManager(Logger.getLogger(serverName), configManager,
+                    databaseManager, serverMetrics, scheduler,
+                    (message, displayMessage) -> {
+                        results.recordDelivered(message.getMessageId(), receiver, message.getTimestamp());
+                        return true;
+                    });
+
+            metrics.add(serverMetrics);
+            databaseManagers.add(databaseManager);
+            syncManagers.add(syncManager);
+            schedulers.add(scheduler);
+            idGenerators.add(MessageIdGenerator.create(configManager.getIdGenerator(), serverName));
+        }
+
+        // 既読位置の読み込みを待ってから送信を開始する
+        Thread.sleep(2000L);
+        Map<String, Long> statusBefore = globalStatus(jdbcUrl, username, password);
+        long start = System.currentTimeMillis();
+
+        // 1秒を tick に分けて、全体の送信数を各tickに均等に割り振る
+        double messagesPerSecond = players * rate / 60.0;
+        ScheduledExecutorService traffic = Executors.newSingleThreadScheduledExecutor(daemon("soak-traffic"));
+        double[] carry = new double[1];
+        traffic.scheduleAtFixedRate(() -> {
+            carry[0] += messagesPerSecond / 20.0;
+            int count = (int) carry[0];
+            carry[0] -= count;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int n = 0; n < count; n++) {
+                int origin = random.nextInt(servers);
+                int player = random.nextInt(players);
+                ChatMessage message = ChatMessage.local(idGenerators.get(origin), "soak-" + origin, "player" + player,
+                        new UUID(0L, player).toString(), "global", "soak message " + random.nextLong(), System.currentTimeMillis());
+                results.recordSent(message.getMessageId(), origin);
+                if (!syncManagers.get(origin).publishLocal(message)) {
+                    results.recordRejected(message.getMessageId());
+                }
+            }
+        }, 0L, 50L, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(durationSeconds * 1000L);
+        traffic.shutdownNow();
+        long sendEnd = System.currentTimeMillis();
+
+        // 全て届くか、待ち時間を過ぎるまで待つ
+        long drainDeadline = System.currentTimeMillis() + drainSeconds * 1000L;
+        while (System.currentTimeMillis() < drainDeadline
+                && results.getDeliveredCount() < results.getExpectedDeliveries()) {
+            Thread.sleep(200L);
+        }
+        long end = System.currentTimeMillis();
+        Map<String, Long> statusAfter = globalStatus(jdbcUrl, username, password);
+
+        boolean passed = report(results, metrics, statusBefore, statusAfter,
+                (sendEnd - start) / 1000.0, (end - start) / 1000.0);
+
+        for (ChatSyncManager syncManager : syncManagers) {
+            syncManager.shutdown();
+        }
+        for (DatabaseManager databaseManager : databaseManagers) {
+            databaseManager.close();
+        }
+        for (SoakScheduler scheduler : schedulers) {
+            scheduler.shutdown();
+        }
+        asyncPool.shutdownNow();
+        if (embedded != null) {
+            embedded.stop();
+        }
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean report(SoakResults results, List<SyncMetrics> metrics,
+                                  Map<String, Long> before, Map<String, Long> after,
+                                  double sendSeconds, double totalSeconds) {
+        long expected = results.getExpectedDeliveries();
+        long delivered = results.getDeliveredCount();
+        long missing = expected - delivered;
+        LatencyHistogram latency = results.getLatency();
+
+        long polls = 0L;
+        long rows = 0L;
+        long inserts = 0L;
+        LatencyHistogram poolWait = new LatencyHistogram("pool_wait", "Pool wait", "microseconds");
+        long poolWaitMax = 0L;
+        for (SyncMetrics serverMetrics : metrics) {
+            polls += serverMetrics.getPollLatency().getCount();
+            rows += serverMetrics.getRowsPerPoll().getSum();
+            inserts += serverMetrics.getMessagesInserted().sum();
+            poolWaitMax = Math.max(poolWaitMax, serverMetrics.getPoolWait().getMax());
+            poolWait.record(serverMetrics.getPoolWait().getValueAtQuantile(0.99));
+        }
+
+        System.out.println("==== Soak test report ====");
+        System.out.printf("Sent:          %d messages in %.1fs (%d rejected by write queue)%n",
+                results.getSentCount(), sendSeconds, results.getRejectedCount());
+        System.out.printf("Deliveries:    %d / %d (%.4f%%), missing %d%n",
+                delivered, expected, expected == 0 ? 100.0 : delivered * 100.0 / expected, missing);
+        System.out.printf("Duplicates:    %d (echoes to origin %d, unknown ids %d)%n",
+                results.getDuplicateCount(), results.getEchoCount(), results.getUnknownCount());
+        System.out.printf("Latency (ms):  p50 %d, p90 %d, p99 %d, max %d%n",
+                latency.getValueAtQuantile(0.5), latency.getValueAtQuantile(0.9),
+                latency.getValueAtQuantile(0.99), latency.getMax());
+        System.out.printf("Polls:         %d (%.1f/s, %.2f rows/poll)%n",
+                polls, polls / totalSeconds, polls == 0 ? 0.0 : (double) rows / polls);
+        System.out.printf("Inserted:      %d rows (%.1f/s)%n", inserts, inserts / totalSeconds);
+        System.out.printf("Pool wait:     worst server p99 %dus, max %dus%n", poolWait.getMax(), poolWaitMax);
+        for (String key : STATUS_KEYS) {
+            long delta = after.getOrDefault(key, 0L) - before.getOrDefault(key, 0L);
+            System.out.printf("DB %-22s %d (%.1f/s)%n", key + ":", delta, delta / totalSeconds);
+        }
+
+        return missing == 0 && results.getDuplicateCount() == 0 && results.getEchoCount() == 0;
+    }
+
+    private static Map<String, Long> globalStatus(String jdbcUrl, String username, String password) {
+        Map<String, Long> status = new HashMap<>();
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SHOW GLOBAL STATUS")) {
+            while (resultSet.next()) {
+                try {
+                    status.put(resultSet.getString(1), Long.parseLong(resultSet.getString(2)));
+                } catch (NumberFormatException ignored) {
+                    // 数値以外の項目は使わない
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Failed to read global status", e);
+        }
+        return status;
+    }
+
+    private static YamlConfiguration bundledConfig() throws Exception {
+        try (Reader reader = new InputStreamReader(
+                SoakTest.class.getResourceAsStream("/config.yml"), StandardCharsets.UTF_8)) {
+            return YamlConfiguration.loadConfiguration(reader);
+        }
+    }
+
+    private static java.util.concurrent.ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}